@@ -0,0 +1,90 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Memory used per contact by ContactsHashChained with no AffiliationPool,
+ * with one keeping affiliations whole and with one sharing email domains,
+ * on each bundled CSV file and on a dataset where every firm of
+ * sampleMembersUK.csv has ten members, and the bytes of affiliation text
+ * each pool holds.
+ *
+ * Each dataset is loaded into COPIES separate databases, each from a fresh
+ * read so no Strings are shared between copies, and the heap measured
+ * after collection with them and again without them, so the per-contact
+ * figure is large enough to measure.
+ */
+public class AffiliationMemoryReport {
+
+    private static final int COPIES = 200;
+    private static final String REPEATED = "sampleMembersUK.csv x10";
+
+    public static void main(String[] args) throws Exception {
+        bytesPerContact(BenchData.CSV_FILES[0], null); // warm up, so the first figures are not skewed
+        System.out.printf("%-24s %6s %9s %11s %11s %11s %11s %11s%n", "dataset", "rows", "distinct",
+                "B/contact", "B/contact", "B/contact", "pool bytes", "pool bytes");
+        System.out.printf("%-24s %6s %9s %11s %11s %11s %11s %11s%n", "", "", "affils",
+                "no pool", "whole", "shared dom.", "whole", "shared dom.");
+        List<String> datasets = new ArrayList<>();
+        for (String csv : BenchData.CSV_FILES) datasets.add(csv);
+        datasets.add(REPEATED);
+        for (String dataset : datasets) {
+            List<Contact> sample = load(dataset);
+            Set<String> distinct = new HashSet<>();
+            AffiliationPool whole = new AffiliationPool();
+            AffiliationPool shared = new AffiliationPool(true);
+            for (Contact contact : sample) {
+                distinct.add(contact.getAffiliation());
+                whole.intern(contact.getAffiliation());
+                shared.intern(contact.getAffiliation());
+            }
+            System.out.printf("%-24s %6d %9d %11.1f %11.1f %11.1f %11d %11d%n", dataset, sample.size(), distinct.size(),
+                    bytesPerContact(dataset, null), bytesPerContact(dataset, false), bytesPerContact(dataset, true),
+                    whole.storedBytes(), shared.storedBytes());
+        }
+    }
+
+    /**
+     * @return the contacts of a bundled CSV, or of REPEATED: ten copies of
+     * sampleMembersUK.csv with the copy number added to each surname
+     */
+    private static List<Contact> load(String dataset) throws Exception {
+        if (!dataset.equals(REPEATED)) {
+            return BenchData.loadCsv(dataset);
+        }
+        List<Contact> contacts = new ArrayList<>();
+        for (int copy = 0; copy < 10; copy++) {
+            for (Contact contact : BenchData.loadCsv("sampleMembersUK.csv")) {
+                contacts.add(new Contact(copy + contact.getName(), contact.getAffiliation()));
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * @param shareDomains null for no pool, else whether the pool shares domains
+     * @return the heap retained per contact by COPIES databases of a dataset
+     */
+    private static double bytesPerContact(String dataset, Boolean shareDomains) throws Exception {
+        List<ContactsHashChained> copies = new ArrayList<>();
+        for (int i = 0; i < COPIES; i++) {
+            ContactsHashChained db = new ContactsHashChained();
+            if (shareDomains != null) db.setAffiliationPool(new AffiliationPool(shareDomains));
+            db.putAll(load(dataset));
+            copies.add(db);
+        }
+        long with = usedAfterGc();
+        int size = copies.get(0).size();
+        copies.clear();
+        return (with - usedAfterGc()) / (double) (COPIES * size); // what letting them go frees, so garbage left from before is not counted
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,111 @@
+package cw1a;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Batch lookups against a loop of single ones: getAll and containsAll of
+ * ContactsHashChained and ContactsHashOpen, each given BATCH names at a
+ * time in random order, nine in ten of them present, against calling get
+ * and containsName once per name. Checks first that both give the same
+ * answers.
+ *
+ * Arguments (optional): contacts (default 1000000), batch size (default 100000).
+ */
+public class BatchLookupBenchmark {
+
+    private static final int ROUNDS = 11;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        int batch = args.length > 1 ? (int) Double.parseDouble(args[1]) : 100000;
+        List<Contact> contacts = BenchData.synthetic(count);
+        ContactsHashChained chained = new ContactsHashChained();
+        chained.putAll(contacts);
+        ContactsHashOpen open = new ContactsHashOpen();
+        for (Contact contact : contacts) {
+            open.put(contact);
+        }
+        Random random = new Random(42);
+        String[][] batches = new String[8][batch];
+        for (String[] names : batches) {
+            for (int i = 0; i < batch; i++) {
+                names[i] = random.nextInt(10) == 0 ? "Missing " + random.nextInt()
+                        : contacts.get(random.nextInt(count)).getName();
+            }
+        }
+
+        for (String[] names : batches) {
+            Contact[] a = chained.getAll(names);
+            Contact[] b = open.getAll(names);
+            boolean[] c = chained.containsAll(names);
+            boolean[] d = open.containsAll(names);
+            for (int i = 0; i < batch; i++) {
+                if (a[i] != chained.get(names[i]) || b[i] != open.get(names[i])
+                        || c[i] != (a[i] != null) || d[i] != (b[i] != null)) {
+                    throw new AssertionError("batch and single lookups disagree on " + names[i]);
+                }
+            }
+        }
+        System.out.println("batch and single lookups agree");
+
+        Map<String, Lookup> variants = new LinkedHashMap<>();
+        variants.put("chained get loop", names -> {
+            Contact[] out = new Contact[names.length];
+            for (int i = 0; i < names.length; i++) out[i] = chained.get(names[i]);
+            return out;
+        });
+        variants.put("chained getAll", chained::getAll);
+        variants.put("chained containsName loop", names -> {
+            boolean[] out = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) out[i] = chained.containsName(names[i]);
+            return out;
+        });
+        variants.put("chained containsAll", chained::containsAll);
+        variants.put("open get loop", names -> {
+            Contact[] out = new Contact[names.length];
+            for (int i = 0; i < names.length; i++) out[i] = open.get(names[i]);
+            return out;
+        });
+        variants.put("open getAll", open::getAll);
+        variants.put("open containsName loop", names -> {
+            boolean[] out = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) out[i] = open.containsName(names[i]);
+            return out;
+        });
+        variants.put("open containsAll", open::containsAll);
+
+        Map<String, double[]> times = new LinkedHashMap<>();
+        for (String variant : variants.keySet()) {
+            times.put(variant, new double[ROUNDS]);
+        }
+        for (int round = 0; round < ROUNDS; round++) { // the variants take turns, so drift in the machine's speed hits them all alike
+            for (Map.Entry<String, Lookup> variant : variants.entrySet()) {
+                times.get(variant.getKey())[round] = time(batches, variant.getValue());
+            }
+        }
+        System.out.printf("median of %d rounds, ns per name:%n", ROUNDS);
+        for (Map.Entry<String, double[]> variant : times.entrySet()) {
+            double[] t = variant.getValue();
+            Arrays.sort(t);
+            System.out.printf("  %-26s %7.1f%n", variant.getKey(), t[ROUNDS / 2]);
+        }
+    }
+
+    private interface Lookup {
+        Object run(String[] names);
+    }
+
+    private static double time(String[][] batches, Lookup lookup) {
+        long names = 0;
+        long start = System.nanoTime();
+        for (String[] batch : batches) {
+            ContactDBBenchmark.blackhole = lookup.run(batch);
+            names += batch.length;
+        }
+        return (System.nanoTime() - start) / (double) names;
+    }
+}
@@ -0,0 +1,48 @@
+package cw1a;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Datasets shared by the benchmarks: the bundled CSV files, read with
+ * ContactFileReader as CW1.loadFile reads them, and synthetic sets of
+ * distinct names.
+ */
+public class BenchData {
+
+    public static final String[] CSV_FILES = {
+        "RandomNamesEmails.csv", "sampleMembersUK.csv", "sampleMembersUS.csv"
+    };
+
+    /**
+     * @pre fileName names a readable CSV file of surname,first names,affiliation lines
+     * @param fileName the file to read, relative to the project directory
+     * @return the contacts, in file order
+     */
+    public static List<Contact> loadCsv(String fileName) throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        try (ContactFileReader reader = new ContactFileReader(new File(fileName))) {
+            Contact contact;
+            while ((contact = reader.readContact()) != null) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * @pre count >= 0
+     * @param count how many contacts to make
+     * @return count contacts with distinct, name-like keys
+     */
+    public static List<Contact> synthetic(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(new Contact("Surname" + Integer.toString(i, 36) + ", First" + (i % 977),
+                    "member" + i + "@br00kes"));
+        }
+        return contacts;
+    }
+}
@@ -0,0 +1,201 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * CachedContactDB under Zipf-distributed lookups of the names in the
+ * bundled CSV files, popularity ranked in a random order. The backend is a
+ * ContactsHashChained made to spin for BACKEND_NANOS on each get and
+ * containsName, standing in for a disk-backed one. For each Zipf exponent
+ * and cache size it prints the hit rate, that of a plain LRU cache of the
+ * same size (a LinkedHashMap in access order) for comparison, and ns per
+ * get uncached and cached.
+ * The "+scan" rows mix in a sweep: every tenth lookup is the next name in
+ * turn, whatever its popularity, which pushes popular names out of an LRU.
+ * Checks first that a small cache, under a random mix of get, containsName,
+ * put, remove and clearDB, always answers as a map of the contents would
+ * and never holds more than its size; a wrong answer exits non-zero, with
+ * an AssertionError. ant check runs it with few lookups.
+ * Args: lookups per run, default 500000.
+ */
+public class CacheBenchmark {
+
+    private static final long BACKEND_NANOS = 2000;
+    private static final double[] EXPONENTS = {0.8, 1.0, 1.2};
+    private static final double[] CACHE_FRACTIONS = {0.01, 0.05, 0.10};
+
+    /**
+     * A database that takes BACKEND_NANOS longer to read than the one it wraps.
+     */
+    private static final class SlowBackend implements IContactDB {
+        private final IContactDB db;
+
+        SlowBackend(IContactDB db) {
+            this.db = db;
+        }
+
+        private static void pause() {
+            long until = System.nanoTime() + BACKEND_NANOS;
+            while (System.nanoTime() < until) {
+                // spin: a sleep this short is not possible
+            }
+        }
+
+        @Override public int getNumEntries() { return db.getNumEntries(); }
+        @Override public int getTotalVisited() { return db.getTotalVisited(); }
+        @Override public void resetTotalVisited() { db.resetTotalVisited(); }
+        @Override public void clearDB() { db.clearDB(); }
+        @Override public boolean containsName(String name) { pause(); return db.containsName(name); }
+        @Override public Contact get(String name) { pause(); return db.get(name); }
+        @Override public int size() { return db.size(); }
+        @Override public boolean isEmpty() { return db.isEmpty(); }
+        @Override public Contact put(Contact contact) { return db.put(contact); }
+        @Override public Contact remove(String name) { return db.remove(name); }
+        @Override public void displayDB() { db.displayDB(); }
+    }
+
+    /**
+     * @return count lookups of names, the name of rank r (from 1) drawn with
+     * probability proportional to 1 / r^exponent, with a sweep through all
+     * the names mixed in every tenth lookup if scan
+     */
+    private static String[] zipf(String[] names, double exponent, int count, boolean scan, Random random) {
+        double[] cumulative = new double[names.length];
+        double total = 0;
+        for (int rank = 0; rank < names.length; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        String[] lookups = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (scan && i % 10 == 0) {
+                lookups[i] = names[(i / 10) % names.length];
+                continue;
+            }
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            lookups[i] = names[rank >= 0 ? rank : Math.min(~rank, names.length - 1)];
+        }
+        return lookups;
+    }
+
+    private static double lruHitRate(String[] lookups, int size) {
+        Map<String, Boolean> lru = new LinkedHashMap<String, Boolean>(size * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > size;
+            }
+        };
+        long hits = 0;
+        for (String name : lookups) {
+            if (lru.get(name) != null) {
+                hits++;
+            } else {
+                lru.put(name, Boolean.TRUE);
+            }
+        }
+        return hits / (double) lookups.length;
+    }
+
+    /**
+     * Runs random operations on a cache a tenth the size of the names used,
+     * half of them on ten popular names so there are hits as well as
+     * evictions, comparing every answer with a map.
+     */
+    private static void checkConsistency() {
+        final int names = 500, cacheSize = 50, operations = 200000;
+        CachedContactDB cached = new CachedContactDB(new ContactsHashChained(), cacheSize);
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < operations; i++) {
+            int k = random.nextBoolean() ? random.nextInt(names) : random.nextInt(10);
+            String name = "Name" + k + ", Check";
+            int op = random.nextInt(100);
+            if (op < 50) {
+                Contact contact = cached.get(name);
+                String affiliation = expected.get(name);
+                if (affiliation == null ? contact != null : contact == null || !contact.getAffiliation().equals(affiliation)) {
+                    throw new AssertionError("get " + name + " returned " + contact + ", expected " + affiliation);
+                }
+            } else if (op < 70) {
+                if (cached.containsName(name) != expected.containsKey(name)) {
+                    throw new AssertionError("containsName " + name + " wrong after " + i + " operations");
+                }
+            } else if (op < 85) {
+                String affiliation = "a" + i;
+                Contact previous = cached.put(new Contact(name, affiliation));
+                String was = expected.put(name, affiliation);
+                if (was == null ? previous != null : previous == null || !previous.getAffiliation().equals(was)) {
+                    throw new AssertionError("put " + name + " returned " + previous + ", expected " + was);
+                }
+            } else if (op < 99) {
+                Contact removed = cached.remove(name);
+                String was = expected.remove(name);
+                if (was == null ? removed != null : removed == null || !removed.getAffiliation().equals(was)) {
+                    throw new AssertionError("remove " + name + " returned " + removed + ", expected " + was);
+                }
+            } else if (random.nextInt(20) == 0) {
+                cached.clearDB();
+                expected.clear();
+            }
+            if (cached.getCachedCount() > cacheSize || cached.size() != expected.size()) {
+                throw new AssertionError("after " + i + " operations: " + cached + ", size " + cached.size()
+                        + ", expected " + expected.size());
+            }
+        }
+        if (cached.getHitCount() == 0 || cached.getEvictionCount() == 0) {
+            throw new AssertionError("the check never hit or never evicted: " + cached);
+        }
+    }
+
+    private static double nanosPerGet(IContactDB db, String[] lookups) {
+        Contact last = null;
+        long start = System.nanoTime();
+        for (String name : lookups) {
+            last = db.get(name);
+        }
+        ContactDBBenchmark.blackhole = last;
+        return (System.nanoTime() - start) / (double) lookups.length;
+    }
+
+    public static void main(String[] args) throws Exception {
+        checkConsistency();
+        System.out.println("consistency: cached answers always match the contents");
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 500000;
+        ContactsHashChained db = new ContactsHashChained();
+        for (String file : BenchData.CSV_FILES) {
+            db.putAll(BenchData.loadCsv(file));
+        }
+        List<String> ranked = new ArrayList<>();
+        for (Contact contact : db.range("", "\uffff")) {
+            ranked.add(contact.getName());
+        }
+        Collections.shuffle(ranked, new Random(42)); // popularity unrelated to name
+        String[] names = ranked.toArray(new String[0]);
+        IContactDB backend = new SlowBackend(db);
+        System.out.println(names.length + " names, backend read " + BACKEND_NANOS + " ns, " + count + " lookups per run");
+        System.out.printf("%-10s %6s %10s %8s %12s %12s%n", "zipf", "cache", "W-TinyLFU", "LRU", "uncached ns", "cached ns");
+
+        for (boolean scan : new boolean[] {false, true}) {
+            for (double exponent : EXPONENTS) {
+                String[] lookups = zipf(names, exponent, count, scan, new Random(7));
+                double uncached = nanosPerGet(backend, lookups);
+                for (double fraction : CACHE_FRACTIONS) {
+                    int size = (int) Math.round(names.length * fraction);
+                    CachedContactDB cached = new CachedContactDB(backend, size);
+                    nanosPerGet(cached, lookups); // warm up: fills the cache and compiles
+                    cached = new CachedContactDB(backend, size);
+                    double nanos = nanosPerGet(cached, lookups);
+                    System.out.printf("%-10s %6d %9.1f%% %7.1f%% %12.0f %12.0f%n", exponent + (scan ? " +scan" : ""), size,
+                            cached.getHitRate() * 100, lruHitRate(lookups, size) * 100, uncached, nanos);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cw1a;
+
+/**
+ * Regression benchmark for the chain layer of ContactsHashChained.
+ * Every name generated here lands in the same bucket, whatever the table
+ * capacity, so the whole table is one chain. If put and get are linear in
+ * the chain length then the time per chain element visited stays flat as
+ * the chain grows, and a chain of 10k+ entries must not overflow the stack.
+ * Treeifying is switched off so the chains stay chains; HashFloodBenchmark
+ * measures the same names with it on.
+ */
+public class ChainLengthBenchmark {
+
+    private static final int[] CHAIN_LENGTHS = {2500, 5000, 10000, 20000};
+
+    /**
+     * Builds names that all collide under LegacyHash (and String.hashCode):
+     * they share length and first character, and differ only in blocks of
+     * "Aa" or "BB", which contribute the same value (31 * 'A' + 'a' == 31 * 'B' + 'B').
+     * @param count how many colliding names to make
+     * @return the names
+     */
+    static String[] collidingNames(int count) {
+        int blocks = 1;
+        while ((1 << blocks) < count) blocks++;
+        String[] names = new String[count];
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.setLength(0);
+            sb.append("Zz");
+            for (int b = 0; b < blocks; b++) {
+                sb.append(((i >> b) & 1) == 0 ? "Aa" : "BB");
+            }
+            names[i] = sb.toString();
+        }
+        return names;
+    }
+
+    public static void main(String[] args) {
+        System.out.println("chain length | put ns/visit | get ns/visit | visits per get");
+        for (int n : CHAIN_LENGTHS) {
+            String[] names = collidingNames(n);
+            ContactsHashChained db = new ContactsHashChained(new LegacyHash());
+            db.setTreeifyThreshold(Integer.MAX_VALUE);
+
+            long start = System.nanoTime();
+            for (String name : names) {
+                db.put(new Contact(name, "x"));
+            }
+            long putNanos = System.nanoTime() - start;
+            long putVisits = db.getTotalVisited();
+
+            db.resetTotalVisited();
+            start = System.nanoTime();
+            for (String name : names) {
+                if (db.get(name) == null) throw new AssertionError(name + " lost");
+            }
+            long getNanos = System.nanoTime() - start;
+            long getVisits = db.getTotalVisited();
+
+            System.out.printf("%12d | %12.2f | %12.2f | %14.1f%n", n,
+                    putNanos / (double) putVisits, getNanos / (double) getVisits,
+                    getVisits / (double) n);
+        }
+    }
+}
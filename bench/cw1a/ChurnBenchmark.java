@@ -0,0 +1,103 @@
+package cw1a;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A delete-heavy workload: the database is filled to a working set, then
+ * each step removes a random live contact, puts a new one and looks up two
+ * names, one present and one not, so the contents keep turning over at a
+ * steady size. Reports per implementation the time and slots or chain
+ * elements visited per step, and for ContactsHashQuadratic how many
+ * DELETED markers it is carrying and how often it rehashed to clear them.
+ * Every remove and put is checked to return what it should, and after the
+ * timed steps every name ever put is looked up: the live ones must be
+ * found with their own affiliation, the removed ones not at all. Any
+ * mistake exits non-zero, with an AssertionError; ant check runs it with
+ * a small working set.
+ *
+ * Arguments (optional): working set (default 200000), steps (default 4000000),
+ * implementations (default chained,open,quadratic; see ContactDBBenchmark -impl).
+ */
+public class ChurnBenchmark {
+
+    public static void main(String[] args) {
+        int live = args.length > 0 ? (int) Double.parseDouble(args[0]) : 200000;
+        long steps = args.length > 1 ? (long) Double.parseDouble(args[1]) : 4000000;
+        String[] impls = (args.length > 2 ? args[2] : "chained,open,quadratic").split(",");
+        for (int round = 0; round < 2; round++) { // the first round warms up every implementation
+            System.out.printf("round %d%n", round + 1);
+            for (String impl : impls) {
+                run(impl, live, steps);
+            }
+        }
+    }
+
+    private static void run(String impl, int live, long steps) {
+        IContactDB db = ContactDBBenchmark.IMPLEMENTATIONS.get(impl).create(50.0);
+        String[] names = new String[live]; // the live names, so one can be picked at random to remove
+        for (int i = 0; i < live; i++) {
+            names[i] = name(i);
+            db.put(new Contact(names[i], "member" + i + "@br00kes"));
+        }
+        Random random = new Random(7);
+        long next = live;
+        long misses = 0;
+        long wrong = 0; // removes and puts that did not return what they should
+        db.resetTotalVisited();
+        long visited = 0;
+        long start = System.nanoTime();
+        for (long step = 0; step < steps; step++) {
+            int victim = random.nextInt(live);
+            Contact removed = db.remove(names[victim]);
+            if (removed == null || !removed.getName().equals(names[victim])) wrong++;
+            names[victim] = name(next);
+            if (db.put(new Contact(names[victim], "member" + next + "@br00kes")) != null) wrong++;
+            next++;
+            if (db.get(names[random.nextInt(live)]) == null) misses++;
+            if (db.containsName(name(next + random.nextInt(live)))) misses++;
+            if ((step & 0xffff) == 0) { // fold the int counter into a long before it can overflow
+                visited += db.getTotalVisited();
+                db.resetTotalVisited();
+            }
+        }
+        double nanos = System.nanoTime() - start;
+        visited += db.getTotalVisited();
+        if (misses > 0 || wrong > 0 || db.size() != live) {
+            throw new AssertionError(impl + ": lost track of the live contacts");
+        }
+        checkContents(impl, db, names, next);
+        String extra = "";
+        if (db instanceof ContactsHashQuadratic) {
+            ContactsHashQuadratic quadratic = (ContactsHashQuadratic) db;
+            extra = String.format(", capacity %d, %d DELETED at the end, %d rehashes",
+                    quadratic.getCapacity(), quadratic.getDeletedCount(), quadratic.getRehashCount());
+        }
+        System.out.printf("  %-10s %7.1f ns/step, %5.2f visited/step%s%n", impl, nanos / steps, visited / (double) steps, extra);
+    }
+
+    /**
+     * Looks up every name put so far, name(0) to name(next - 1).
+     */
+    private static void checkContents(String impl, IContactDB db, String[] names, long next) {
+        Set<String> liveNames = new HashSet<>();
+        for (String name : names) {
+            liveNames.add(name);
+        }
+        for (long i = 0; i < next; i++) {
+            String name = name(i);
+            Contact contact = db.get(name);
+            if (liveNames.contains(name)
+                    ? contact == null || !contact.getAffiliation().equals("member" + i + "@br00kes")
+                    : contact != null || db.containsName(name)) {
+                throw new AssertionError(impl + ": " + name + (liveNames.contains(name) ? " is live" : " was removed")
+                        + " but get returned " + contact);
+            }
+        }
+    }
+
+    private static String name(long i) {
+        return "Surname" + Long.toString(i, 36) + ", First" + (i % 977);
+    }
+}
@@ -0,0 +1,149 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hammers one ContactsHashConcurrent from many threads and checks that it
+ * never loses, duplicates or invents a contact.
+ *
+ * Each writer thread owns its own names, so it knows exactly what every
+ * get, put and remove of them must return, while the table grows under it
+ * from empty. All threads also overwrite a shared set of names that is
+ * never removed, and reader threads check that those are always found,
+ * even while their segment is being resized. At the end the size must
+ * equal what the writers left behind.
+ *
+ * Arguments (optional): writer threads (default 8), operations per writer
+ * (default 500000). Exits non-zero, with an AssertionError, on the first
+ * inconsistency any thread finds; ant check runs it.
+ */
+public class ConcurrentStressTest {
+
+    private static final int SHARED = 1000;
+    private static final int OWN_NAMES = 20000; // per writer
+    private static final int READERS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 500000;
+        for (int round = 1; round <= 3; round++) {
+            long start = System.nanoTime();
+            int size = run(writers, operations, round);
+            System.out.printf("round %d: %d writers x %d ops + %d readers ok, final size %d, %.0f ms%n",
+                    round, writers, operations, READERS, size, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    private static int run(int writers, int operations, long seed) throws Exception {
+        ContactsHashConcurrent db = new ContactsHashConcurrent();
+        for (int i = 0; i < SHARED; i++) {
+            db.put(new Contact(sharedName(i), "v0"));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch go = new CountDownLatch(1);
+        int[] liveCounts = new int[writers];
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            final int id = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(seed * 31 + id);
+                boolean[] live = new boolean[OWN_NAMES];
+                String[] affiliation = new String[OWN_NAMES];
+                await(go);
+                for (int op = 0; op < operations && failure.get() == null; op++) {
+                    int k = random.nextInt(OWN_NAMES);
+                    String name = ownName(id, k);
+                    switch (random.nextInt(4)) {
+                        case 0:
+                        case 1: {
+                            String value = "w" + id + "-" + op;
+                            Contact previous = db.put(new Contact(name, value));
+                            check(live[k] ? previous != null && previous.getAffiliation().equals(affiliation[k]) : previous == null,
+                                    "put " + name + " returned " + previous);
+                            live[k] = true;
+                            affiliation[k] = value;
+                            break;
+                        }
+                        case 2: {
+                            Contact removed = db.remove(name);
+                            check(live[k] ? removed != null && removed.getAffiliation().equals(affiliation[k]) : removed == null,
+                                    "remove " + name + " returned " + removed);
+                            live[k] = false;
+                            break;
+                        }
+                        default: {
+                            Contact found = db.get(name);
+                            check(live[k] ? found != null && found.getAffiliation().equals(affiliation[k]) : found == null,
+                                    "get " + name + " returned " + found);
+                            check(db.containsName(name) == live[k], "containsName " + name);
+                            db.put(new Contact(sharedName(random.nextInt(SHARED)), "w" + id));
+                        }
+                    }
+                }
+                int count = 0;
+                for (int k = 0; k < OWN_NAMES; k++) {
+                    check((db.get(ownName(id, k)) != null) == live[k], "final state of " + ownName(id, k));
+                    if (live[k]) count++;
+                }
+                liveCounts[id] = count;
+            }, "writer-" + w));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> {
+                await(go);
+                int i = 0;
+                while (writing.get() && failure.get() == null) {
+                    String name = sharedName(i++ % SHARED);
+                    check(db.get(name) != null && db.containsName(name), "shared name " + name + " not found");
+                }
+            }, "reader-" + r));
+        }
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, ex) -> failure.compareAndSet(null, ex));
+            thread.start();
+        }
+        go.countDown();
+        for (int w = 0; w < writers; w++) {
+            threads.get(w).join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("stress test failed", failure.get());
+        }
+
+        int expected = SHARED;
+        for (int count : liveCounts) expected += count;
+        check(db.size() == expected, "size " + db.size() + ", expected " + expected);
+        return db.size();
+    }
+
+    private static String sharedName(int i) {
+        return "Shared, Name" + i;
+    }
+
+    private static String ownName(int writer, int k) {
+        return "Writer" + writer + ", Name" + k;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(Thread.currentThread().getName() + ": " + message);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cw1a;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throughput of ContactsHashConcurrent against ContactsHashChained behind
+ * one global lock (how a shared instance has had to be used), from 1 to 32
+ * threads, on mixed workloads of gets and writes.
+ *
+ * Each run preloads the table, then every thread picks random names from
+ * a key space twice the preloaded size for a fixed time: a read is a get,
+ * a write is a put or a remove with equal probability, so the size stays
+ * roughly steady. Reported in millions of operations per second.
+ *
+ * Arguments (optional): preloaded contacts (default 100000), ms per run
+ * (default 1000).
+ */
+public class ConcurrentThroughputBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final int[] READ_PERCENT = {100, 90, 50};
+
+    static volatile Object blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int preload = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        long runMs = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        List<Contact> contacts = BenchData.synthetic(preload * 2);
+        System.out.printf("%d processors, %d contacts preloaded, %d ms per run%n",
+                Runtime.getRuntime().availableProcessors(), preload, runMs);
+        System.out.printf("%-12s %6s %8s %12s%n", "impl", "read%", "threads", "Mops/s");
+        for (int readPercent : READ_PERCENT) {
+            for (String impl : new String[] {"global-lock", "concurrent"}) {
+                for (int threads : THREADS) {
+                    IContactDB db = create(impl);
+                    for (int i = 0; i < preload; i++) {
+                        db.put(contacts.get(i));
+                    }
+                    run(db, contacts, readPercent, 1, runMs / 4); // warmup
+                    double mops = run(db, contacts, readPercent, threads, runMs);
+                    System.out.printf("%-12s %6d %8d %12.2f%n", impl, readPercent, threads, mops);
+                }
+            }
+        }
+    }
+
+    private static IContactDB create(String impl) {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) { }
+        }));
+        try {
+            return impl.equals("concurrent") ? new ContactsHashConcurrent() : new LockedContactDB(new ContactsHashChained());
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * @return millions of operations per second over all threads
+     */
+    private static double run(IContactDB db, List<Contact> contacts, int readPercent, int threads, long runMs)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] counts = new long[threads * 16]; // each thread's count on its own cache line
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int slot = t * 16;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Object result = null;
+                long n = 0;
+                try {
+                    go.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                while (running.get()) {
+                    for (int i = 0; i < 64; i++) {
+                        Contact contact = contacts.get(random.nextInt(contacts.size()));
+                        int dice = random.nextInt(200);
+                        if (dice < readPercent * 2) {
+                            result = db.get(contact.getName());
+                        } else if ((dice & 1) == 0) {
+                            result = db.put(contact);
+                        } else {
+                            result = db.remove(contact.getName());
+                        }
+                    }
+                    n += 64;
+                }
+                counts[slot] = n;
+                blackhole = result;
+            });
+            workers[t].start();
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(runMs);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        long total = 0;
+        for (long count : counts) total += count;
+        return total / (elapsed / 1e3);
+    }
+
+    /**
+     * Any IContactDB behind one lock: the baseline a concurrent table has to beat.
+     */
+    private static final class LockedContactDB implements IContactDB {
+        private final IContactDB db;
+
+        LockedContactDB(IContactDB db) {
+            this.db = db;
+        }
+
+        @Override public synchronized int getNumEntries() { return db.getNumEntries(); }
+        @Override public synchronized void resetTotalVisited() { db.resetTotalVisited(); }
+        @Override public synchronized int getTotalVisited() { return db.getTotalVisited(); }
+        @Override public synchronized void clearDB() { db.clearDB(); }
+        @Override public synchronized boolean containsName(String name) { return db.containsName(name); }
+        @Override public synchronized Contact get(String name) { return db.get(name); }
+        @Override public synchronized int size() { return db.size(); }
+        @Override public synchronized boolean isEmpty() { return db.isEmpty(); }
+        @Override public synchronized Contact put(Contact contact) { return db.put(contact); }
+        @Override public synchronized Contact remove(String name) { return db.remove(name); }
+        @Override public synchronized void displayDB() { db.displayDB(); }
+    }
+}
@@ -0,0 +1,201 @@
+package cw1a;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput and latency of the IContactDB operations, for any
+ * implementation, over the bundled CSV files and synthetic name sets, at a
+ * range of maximum load factors.
+ *
+ * Follows the JMH approach without the dependency: every combination of
+ * parameters gets a fresh database, some warmup iterations that are thrown
+ * away, then measured iterations reported as mean +- standard deviation.
+ * Each iteration runs the operation once per contact in the dataset.
+ *
+ * Options (all optional, lists are comma separated):
+ *   -impl   chained,open,concurrent,offheap,quadratic,cuckoo  implementations to compare
+ *   -data   RandomNamesEmails.csv,synthetic:1e5  CSV files and/or synthetic:count
+ *   -lf     50                                 maximum load factors, as percentages
+ *   -ops    put,putAll,getHit,getMiss,containsName,remove,displayDB
+ *           (putAll, the bulk load, only applies to chained; others report NaN)
+ *   -warmup 3  -iterations 5
+ * e.g. ant bench -Dbench.class=cw1a.ContactDBBenchmark -Dbench.args="-data synthetic:1e6 -lf 50,75"
+ * Synthetic sets of 1e7 need a heap of several GB (-Dbench.jvmargs=-Xmx6g).
+ */
+public class ContactDBBenchmark {
+
+    /**
+     * Makes an empty database of one implementation at a maximum load factor.
+     */
+    public interface Factory {
+        IContactDB create(double maxLoadFactor);
+    }
+
+    /**
+     * The implementations known by name to -impl. Later implementations
+     * register here as they are added.
+     */
+    public static final Map<String, Factory> IMPLEMENTATIONS = new LinkedHashMap<>();
+    static {
+        IMPLEMENTATIONS.put("chained", lf -> {
+            ContactsHashChained db = new ContactsHashChained();
+            db.setMaxLoadFactor(lf);
+            return db;
+        });
+        IMPLEMENTATIONS.put("open", lf -> {
+            ContactsHashOpen db = new ContactsHashOpen();
+            db.setMaxLoadFactor(Math.min(lf, 90.0));
+            return db;
+        });
+        IMPLEMENTATIONS.put("concurrent", lf -> {
+            ContactsHashConcurrent db = new ContactsHashConcurrent();
+            db.setMaxLoadFactor(lf);
+            return db;
+        });
+        IMPLEMENTATIONS.put("offheap", lf -> {
+            ContactsHashOffHeap db = new ContactsHashOffHeap();
+            db.setMaxLoadFactor(Math.min(lf, 90.0));
+            return db;
+        });
+        IMPLEMENTATIONS.put("quadratic", lf -> {
+            ContactsHashQuadratic db = new ContactsHashQuadratic();
+            db.setMaxLoadFactor(Math.min(lf, 50.0));
+            return db;
+        });
+        IMPLEMENTATIONS.put("cuckoo", lf -> {
+            ContactsHashCuckoo db = new ContactsHashCuckoo();
+            db.setMaxLoadFactor(Math.min(lf, 95.0));
+            return db;
+        });
+    }
+
+    private static final String[] ALL_OPS = {"put", "putAll", "getHit", "getMiss", "containsName", "remove", "displayDB"};
+
+    static volatile Object blackhole; // keeps results of timed reads from being optimised away
+
+    private static final PrintStream QUIET = new PrintStream(new OutputStream() {
+        @Override public void write(int b) { }
+        @Override public void write(byte[] b, int off, int len) { }
+    });
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("-impl", String.join(",", IMPLEMENTATIONS.keySet()));
+        options.put("-data", String.join(",", BenchData.CSV_FILES) + ",synthetic:1e4,synthetic:1e5,synthetic:1e6");
+        options.put("-lf", "50");
+        options.put("-ops", String.join(",", ALL_OPS));
+        options.put("-warmup", "3");
+        options.put("-iterations", "5");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!options.containsKey(args[i])) throw new IllegalArgumentException("unknown option " + args[i]);
+            options.put(args[i], args[i + 1]);
+        }
+        int warmup = Integer.parseInt(options.get("-warmup"));
+        int iterations = Integer.parseInt(options.get("-iterations"));
+
+        System.out.printf("%-10s %-24s %6s %-13s %14s %14s%n", "impl", "dataset", "lf", "op", "ns/op", "ops/s");
+        for (String data : options.get("-data").split(",")) {
+            List<Contact> contacts = dataset(data);
+            for (String lfText : options.get("-lf").split(",")) {
+                double lf = Double.parseDouble(lfText);
+                for (String impl : options.get("-impl").split(",")) {
+                    Factory factory = IMPLEMENTATIONS.get(impl);
+                    if (factory == null) throw new IllegalArgumentException("unknown implementation " + impl);
+                    for (String op : options.get("-ops").split(",")) {
+                        double[] nsPerOp = new double[iterations];
+                        for (int i = -warmup; i < iterations; i++) {
+                            double ns = iteration(factory, lf, contacts, op);
+                            if (i >= 0) nsPerOp[i] = ns;
+                        }
+                        double mean = mean(nsPerOp);
+                        System.out.printf("%-10s %-24s %6.1f %-13s %8.1f +-%4.1f %14.0f%n",
+                                impl, data, lf, op, mean, stddev(nsPerOp, mean), 1e9 / mean);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param spec a CSV file name or synthetic:count, where count may be written like 1e6
+     * @return the contacts of that dataset
+     */
+    static List<Contact> dataset(String spec) throws Exception {
+        if (spec.startsWith("synthetic:")) {
+            return BenchData.synthetic((int) Double.parseDouble(spec.substring("synthetic:".length())));
+        }
+        return BenchData.loadCsv(spec);
+    }
+
+    /**
+     * Builds whatever the operation needs untimed, then times one pass of it
+     * over every contact.
+     * @return the mean time of one operation, in ns
+     */
+    private static double iteration(Factory factory, double lf, List<Contact> contacts, String op) {
+        PrintStream console = System.out;
+        System.setOut(QUIET); // constructors and displayDB print; keep the report readable
+        try {
+            IContactDB db = factory.create(lf);
+            String[] names = new String[contacts.size()];
+            for (int i = 0; i < names.length; i++) names[i] = contacts.get(i).getName();
+            if (op.equals("putAll") && !(db instanceof ContactsHashChained)) {
+                return Double.NaN;
+            }
+            if (!op.startsWith("put")) {
+                for (Contact contact : contacts) db.put(contact);
+            }
+            if (op.equals("getMiss")) {
+                for (int i = 0; i < names.length; i++) names[i] = names[i] + " Jr";
+            }
+            Object result = null;
+            long start = System.nanoTime();
+            switch (op) {
+                case "put":
+                    for (Contact contact : contacts) result = db.put(contact);
+                    break;
+                case "putAll":
+                    result = ((ContactsHashChained) db).putAll(contacts);
+                    break;
+                case "getHit":
+                case "getMiss":
+                    for (String name : names) result = db.get(name);
+                    break;
+                case "containsName":
+                    for (String name : names) result = db.containsName(name);
+                    break;
+                case "remove":
+                    for (String name : names) result = db.remove(name);
+                    break;
+                case "displayDB":
+                    db.displayDB();
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown op " + op + ", expected one of " + Arrays.toString(ALL_OPS));
+            }
+            long elapsed = System.nanoTime() - start;
+            blackhole = result;
+            return elapsed / (double) contacts.size();
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0;
+        for (double v : values) sum += v;
+        return sum / values.length;
+    }
+
+    private static double stddev(double[] values, double mean) {
+        if (values.length < 2) return 0;
+        double sum = 0;
+        for (double v : values) sum += (v - mean) * (v - mean);
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,86 @@
+package cw1a;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Scanner;
+
+/**
+ * Parsing throughput, in rows/sec, of the old CW1.loadFile approach
+ * (Scanner.nextLine and String.split) against ContactFileReader, over a
+ * large file built by repeating the bundled CSVs. Only parsing is timed:
+ * contacts are counted, not stored.
+ */
+public class CsvLoadBenchmark {
+
+    private static final int DEFAULT_ROWS = 2000000;
+    private static final int ROUNDS = 3;
+
+    static volatile Object blackhole;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File file = File.createTempFile("contacts", ".csv");
+        file.deleteOnExit();
+        writeFile(file, rows);
+        System.out.printf("%d rows, %.1f MB%n", rows, file.length() / 1e6);
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long scanned = scannerSplit(file);
+            double scannerSeconds = (System.nanoTime() - start) / 1e9;
+            start = System.nanoTime();
+            long read = contactFileReader(file);
+            double readerSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Scanner+split: %10.0f rows/sec   ContactFileReader: %10.0f rows/sec%n",
+                    scanned / scannerSeconds, read / readerSeconds);
+        }
+    }
+
+    /**
+     * Writes a CSV file of the given number of rows, cycling through the
+     * bundled CSV files with a row number prefixed to each surname.
+     */
+    static void writeFile(File file, int rows) throws IOException {
+        StringBuilder sample = new StringBuilder();
+        for (String csv : BenchData.CSV_FILES) {
+            try (Scanner in = new Scanner(new File(csv))) {
+                while (in.hasNextLine()) sample.append(in.nextLine()).append('\n');
+            }
+        }
+        String[] lines = sample.toString().split("\n");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < rows; i++) {
+                String line = lines[i % lines.length];
+                out.write(i / lines.length + line); // numbered surnames keep names distinct
+                out.write('\n');
+            }
+        }
+    }
+
+    /** The parsing CW1.loadFile used to do; breaks quoted affiliations. */
+    private static long scannerSplit(File file) throws IOException {
+        long rows = 0;
+        try (Scanner text = new Scanner(new FileInputStream(file))) {
+            while (text.hasNextLine()) {
+                String[] parts = text.nextLine().split(",");
+                blackhole = new Contact(parts[0].trim() + ", " + parts[1].trim(), parts[2].trim());
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private static long contactFileReader(File file) throws IOException {
+        long rows = 0;
+        try (ContactFileReader reader = new ContactFileReader(file)) {
+            Contact contact;
+            while ((contact = reader.readContact()) != null) {
+                blackhole = contact;
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
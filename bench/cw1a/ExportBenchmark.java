@@ -0,0 +1,121 @@
+package cw1a;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Export throughput of ContactExporter at a range of page sizes, writing a
+ * synthetic database to a temporary file, with the heap in use after each
+ * export. Checks first that exporting the bundled CSVs, and contacts full of
+ * commas, quotes, line breaks and empty fields, and reading the export back
+ * gives the same contacts, and that contacts the reader could not give
+ * back (no ", " in the name, spaces it would trim) are refused.
+ *
+ * A contact that reads back differently, or is exported when it should be
+ * refused, exits non-zero, with an AssertionError; ant check runs it on a
+ * small database.
+ *
+ * Arguments (optional): contacts (default 1000000).
+ */
+public class ExportBenchmark {
+
+    private static final int[] PAGE_SIZES = {256, 4096, 65536};
+
+    /**
+     * Exports contacts whose fields need quoting, reads the file back with
+     * ContactFileReader and compares every name and affiliation; then
+     * checks that each contact that could not read back is refused.
+     */
+    private static void checkAwkward() throws Exception {
+        String[] surnames = {"O\"Brien", "Smith, Jr", "Line\nBreak", "Said \"Hi\"", "", "Crlf\r\nEnd", "Zo\u00eb", "Plain"};
+        String[] firstNames = {"Ann", "Bob, Carl", "", "\"Quoted\"", "D \u00e9 E", "Multi\r\nLine"};
+        String[] affiliations = {"Acme, Inc", "Quote\"Corp", "", "\"\"", "a@b.com", "x\ny"};
+        ContactsHashChained db = new ContactsHashChained();
+        int i = 0;
+        for (String surname : surnames) {
+            for (String firstName : firstNames) {
+                db.put(new Contact(surname + ", " + firstName, affiliations[i++ % affiliations.length]));
+            }
+        }
+        File file = File.createTempFile("awkward", ".csv");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            new ContactExporter(db, 7).writeAll(out);
+        }
+        List<Contact> back = BenchData.loadCsv(file.getPath());
+        if (back.size() != db.size()) throw new AssertionError("awkward: " + back.size() + " contacts read back of " + db.size());
+        for (Contact contact : back) {
+            Contact original = db.get(contact.getName());
+            if (original == null || !original.getAffiliation().equals(contact.getAffiliation())) {
+                throw new AssertionError("awkward: read back " + contact + ", exported " + original);
+            }
+        }
+
+        List<Contact> unreadable = new ArrayList<>();
+        unreadable.add(new Contact("NoComma", "x"));
+        unreadable.add(new Contact("Comma,NoSpace", "x"));
+        unreadable.add(new Contact(" Lead, Space", "x"));
+        unreadable.add(new Contact("Trail , Space", "x"));
+        unreadable.add(new Contact("Smith,  Ann", "x"));
+        unreadable.add(new Contact("Smith, Ann ", "x"));
+        unreadable.add(new Contact("Smith, Ann", " padded "));
+        for (Contact contact : unreadable) {
+            ContactsHashChained one = new ContactsHashChained();
+            one.put(new Contact("Aaa, Fine", "x")); // on the same page, and must not be written either
+            one.put(contact);
+            StringWriter out = new StringWriter();
+            try {
+                new ContactExporter(one).writeAll(out);
+                throw new AssertionError("exported " + contact + ", which reads back differently");
+            } catch (IOException expected) {
+                if (out.getBuffer().length() != 0) throw new AssertionError("wrote part of a refused page: " + out);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (String csv : BenchData.CSV_FILES) {
+            ContactsHashChained db = new ContactsHashChained();
+            db.putAll(BenchData.loadCsv(csv));
+            File file = File.createTempFile("export", ".csv");
+            file.deleteOnExit();
+            try (OutputStream out = new FileOutputStream(file)) {
+                new ContactExporter(db, 100).writeAll(out);
+            }
+            ContactsHashChained back = new ContactsHashChained();
+            back.putAll(BenchData.loadCsv(file.getPath()));
+            if (!back.page(null, db.size() + 1).getContacts().toString()
+                    .equals(db.page(null, db.size() + 1).getContacts().toString())) {
+                throw new AssertionError(csv + ": export does not read back to the same contacts");
+            }
+        }
+        System.out.println("bundled CSVs: export reads back to the same contacts");
+        checkAwkward();
+        System.out.println("awkward contacts: export reads back to the same contacts, unreadable ones refused");
+
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        ContactsHashChained db = new ContactsHashChained();
+        db.putAll(BenchData.synthetic(count));
+        File file = File.createTempFile("export", ".csv");
+        file.deleteOnExit();
+        for (int round = 0; round < 2; round++) {
+            for (int pageSize : PAGE_SIZES) {
+                long start = System.nanoTime();
+                long rows;
+                try (OutputStream out = new FileOutputStream(file)) {
+                    rows = new ContactExporter(db, pageSize).writeAll(out);
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                Runtime runtime = Runtime.getRuntime();
+                System.out.printf("page %6d: %d rows, %.1f MB in %.3f s (%.0f rows/sec), heap in use %d MB%n",
+                        pageSize, rows, file.length() / 1e6, seconds, rows / seconds,
+                        (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+            }
+        }
+    }
+}
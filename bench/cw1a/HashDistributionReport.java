@@ -0,0 +1,77 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the hash strategies on the bundled CSV files and a synthetic set:
+ * for each, loads a ContactsHashChained and reports the longest chain, the
+ * chi-squared statistic of the chain lengths against a uniform spread, the
+ * buckets visited per put and the time per hash.
+ * A well-behaved hash gives chi-squared close to its degrees of freedom
+ * (capacity - 1); z is how many standard deviations away it is.
+ */
+public class HashDistributionReport {
+
+    private static final int HASH_REPEATS = 200;
+
+    static volatile int blackhole; // keeps the timed hashing from being optimised away
+
+    public static void main(String[] args) throws Exception {
+        Map<String, IHashStrategy> strategies = new LinkedHashMap<>();
+        strategies.put("legacy", new LegacyHash());
+        strategies.put("spread", new SpreadHash());
+        strategies.put("fnv1a", new Fnv1aHash(0x5eed));
+
+        Map<String, List<Contact>> datasets = new LinkedHashMap<>();
+        List<Contact> all = new ArrayList<>();
+        for (String file : BenchData.CSV_FILES) {
+            datasets.put(file, BenchData.loadCsv(file));
+            all.addAll(datasets.get(file));
+        }
+        datasets.put("all bundled CSVs", all);
+        datasets.put("synthetic 1e5", BenchData.synthetic(100000));
+
+        System.out.printf("%-22s %-7s %8s %9s %9s %8s %12s %10s%n",
+                "dataset", "hash", "entries", "capacity", "max chain", "z", "visits/put", "ns/hash");
+        for (Map.Entry<String, List<Contact>> dataset : datasets.entrySet()) {
+            for (Map.Entry<String, IHashStrategy> strategy : strategies.entrySet()) {
+                report(dataset.getKey(), strategy.getKey(), strategy.getValue(), dataset.getValue());
+            }
+        }
+    }
+
+    private static void report(String dataset, String name, IHashStrategy strategy, List<Contact> contacts) {
+        ContactsHashChained db = new ContactsHashChained(strategy);
+        for (Contact contact : contacts) {
+            db.put(contact);
+        }
+        double visitsPerPut = db.getTotalVisited() / (double) contacts.size();
+
+        int[] lengths = db.chainLengths();
+        int max = 0;
+        for (int length : lengths) max = Math.max(max, length);
+        double expected = db.size() / (double) lengths.length;
+        double chiSquared = 0;
+        for (int length : lengths) chiSquared += (length - expected) * (length - expected) / expected;
+        int degrees = lengths.length - 1;
+        double z = (chiSquared - degrees) / Math.sqrt(2.0 * degrees);
+
+        String[] names = new String[contacts.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = new String(contacts.get(i).getName()); // fresh copies, so the first pass pays for String.hashCode as a newly read name would
+        }
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < HASH_REPEATS; r++) {
+            for (String s : names) sink += strategy.hash(s);
+        }
+        double nsPerHash = (System.nanoTime() - start) / (double) HASH_REPEATS / names.length;
+
+        blackhole = sink;
+        System.out.printf("%-22s %-7s %8d %9d %9d %8.2f %12.2f %10.2f%n", dataset, name, db.size(),
+                lengths.length, max, z, visitsPerPut, nsPerHash);
+    }
+}
@@ -0,0 +1,102 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A hash-flooding attack on ContactsHashChained: names built to collide
+ * under String.hashCode (see ChainLengthBenchmark.collidingNames) are put
+ * and then looked up, in three tables:
+ *   chain    LegacyHash, treeifying off: the one bucket is a plain chain
+ *   tree     LegacyHash: the bucket becomes a tree ordered by name
+ *   default  SpreadHash, which reseeds once a tree is far longer than the load explains
+ * The chain's visits per get grow linearly with the names; the tree's grow
+ * with log2 of them, and the default table's stay constant.
+ * The chain is only run up to CHAIN_LIMIT names, since it is quadratic.
+ * Checks first that the default table reseeds under a flood, even one
+ * loaded far past its maximum load factor, and does not for random names
+ * that merely overload it; a wrong decision exits non-zero, with an
+ * AssertionError. ant check runs it with a small attack.
+ * Args: the largest attack, default 100000.
+ */
+public class HashFloodBenchmark {
+
+    private static final int CHAIN_LIMIT = 20000;
+
+    private static void run(String label, ContactsHashChained db, String[] names) {
+        long start = System.nanoTime();
+        for (String name : names) {
+            db.put(new Contact(name, "x"));
+        }
+        long putNanos = System.nanoTime() - start;
+        int rounds = Math.max(1, 200000 / names.length); // enough gets to time
+        db.resetTotalVisited();
+        Contact last = null;
+        start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String name : names) {
+                last = db.get(name);
+            }
+        }
+        long getNanos = System.nanoTime() - start;
+        if (last == null) throw new AssertionError("lost a name");
+        ContactDBBenchmark.blackhole = last;
+        long gets = (long) rounds * names.length;
+        int longest = 0;
+        for (int length : db.chainLengths()) {
+            longest = Math.max(longest, length);
+        }
+        System.out.printf("%8d  %-8s %10.0f %10.0f %12.1f %10d%n", names.length, label,
+                putNanos / (double) names.length, getNanos / (double) gets,
+                db.getTotalVisited() / (double) gets, longest);
+    }
+
+    /**
+     * Overloads default tables with random names, by a high maximum load
+     * factor and by putAll with no hint, then floods one of them.
+     */
+    private static void checkReseeding() {
+        List<Contact> random = new ArrayList<>();
+        Random r = new Random(1);
+        for (int i = 0; i < 300000; i++) {
+            random.add(new Contact("Name" + r.nextLong() + ", Check", "x"));
+        }
+        ContactsHashChained overloaded = new ContactsHashChained();
+        overloaded.setMaxLoadFactor(20000);
+        for (Contact contact : random) {
+            overloaded.put(contact);
+        }
+        ContactsHashChained unhinted = new ContactsHashChained();
+        unhinted.putAll(random, 0);
+        if (overloaded.isReseeded() || unhinted.isReseeded()) {
+            throw new AssertionError("reseeded a table that was only overloaded, not flooded");
+        }
+        ContactsHashChained fresh = new ContactsHashChained();
+        for (String name : ChainLengthBenchmark.collidingNames(4096)) {
+            fresh.put(new Contact(name, "x"));
+            overloaded.put(new Contact(name, "x"));
+        }
+        if (!fresh.isReseeded() || !overloaded.isReseeded()) {
+            throw new AssertionError("a flood did not make the table reseed");
+        }
+    }
+
+    public static void main(String[] args) {
+        checkReseeding();
+        System.out.println("reseeds under a flood, not under overload");
+        int largest = args.length > 0 ? (int) Double.parseDouble(args[0]) : 100000;
+        run("warmup", new ContactsHashChained(new LegacyHash()), ChainLengthBenchmark.collidingNames(20000));
+        System.out.println("   names  table    put ns/op  get ns/op  visits/get  longest bucket");
+        for (int n = 1000; n <= largest; n *= 10) {
+            String[] names = ChainLengthBenchmark.collidingNames(n);
+            if (n <= CHAIN_LIMIT) {
+                ContactsHashChained chain = new ContactsHashChained(new LegacyHash());
+                chain.setTreeifyThreshold(Integer.MAX_VALUE);
+                run("chain", chain, names);
+            }
+            run("tree", new ContactsHashChained(new LegacyHash()), names);
+            run("default", new ContactsHashChained(), names);
+        }
+    }
+}
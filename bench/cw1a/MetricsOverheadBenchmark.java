@@ -0,0 +1,78 @@
+package cw1a;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * What TableMetrics costs: put and get throughput of ContactsHashChained
+ * with metrics off and on, median of ROUNDS alternating runs, then the
+ * metrics of the last run as toString gives them and as JMX reads them
+ * back from the platform MBean server.
+ *
+ * Arguments (optional): contacts (default 1000000).
+ */
+public class MetricsOverheadBenchmark {
+
+    private static final int ROUNDS = 7;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        List<Contact> contacts = BenchData.synthetic(count);
+        String[] lookups = new String[count];
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            lookups[i] = contacts.get(random.nextInt(count)).getName();
+        }
+
+        double[][] putNanos = new double[2][ROUNDS];
+        double[][] getNanos = new double[2][ROUNDS];
+        ContactsHashChained db = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int on = 0; on < 2; on++) {
+                db = null;
+                System.gc(); // so neither run pays to collect the other's table
+                db = new ContactsHashChained();
+                if (on == 1) db.enableMetrics();
+                long start = System.nanoTime();
+                for (Contact contact : contacts) {
+                    db.put(contact);
+                }
+                putNanos[on][round] = (System.nanoTime() - start) / (double) count;
+                start = System.nanoTime();
+                Contact last = null;
+                for (String name : lookups) {
+                    last = db.get(name);
+                }
+                getNanos[on][round] = (System.nanoTime() - start) / (double) count;
+                ContactDBBenchmark.blackhole = last;
+            }
+        }
+        System.out.printf("median of %d rounds, ns per operation:%n", ROUNDS);
+        System.out.printf("  %-4s %10s %10s%n", "", "metrics off", "metrics on");
+        System.out.printf("  %-4s %10.1f %10.1f%n", "put", median(putNanos[0]), median(putNanos[1]));
+        System.out.printf("  %-4s %10.1f %10.1f%n", "get", median(getNanos[0]), median(getNanos[1]));
+
+        TableMetrics metrics = db.getMetrics(); // the last run had metrics on
+        System.out.println();
+        System.out.println(metrics);
+        ObjectName name = metrics.register("benchmark");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        CompositeData get = (CompositeData) server.getAttribute(name, "Get");
+        System.out.printf("%nover JMX: %s size=%s loadFactor=%.1f%% maxChain=%s meanChain=%.2f grows=%s, get count=%s p99Nanos=%s%n",
+                name, server.getAttribute(name, "Size"), (Double) server.getAttribute(name, "LoadFactor"),
+                server.getAttribute(name, "MaxChainLength"), (Double) server.getAttribute(name, "MeanChainLength"),
+                server.getAttribute(name, "GrowCount"), get.get("count"), get.get("p99Nanos"));
+        TableMetrics.unregister(name);
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
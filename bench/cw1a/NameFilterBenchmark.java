@@ -0,0 +1,110 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * containsName with and without ContactsHashChained's name filter, on each
+ * bundled CSV file and on synthetic sets: ns per call for names that are
+ * not held (the filter's case) and for names that are (its cost), the
+ * false positive rate measured on the misses, and the filter's bits per
+ * name. Then, to show what removals do, half the names are removed and as
+ * many new ones put, and the misses are measured again.
+ * Times are medians of ROUNDS passes over the names in shuffled order.
+ * Args: synthetic sizes, default 1e5 1e6.
+ */
+public class NameFilterBenchmark {
+
+    private static final int ROUNDS = 9;
+    private static final int MIN_CALLS = 1000000; // per round, repeating the names of a small dataset
+
+    /**
+     * Times containsName of every name on each table, a round on one then a
+     * round on the other, so that drift in the machine affects both alike.
+     * @return the median ns per call on each table
+     */
+    private static double[] time(ContactsHashChained[] dbs, String[] names) {
+        int repeats = Math.max(1, MIN_CALLS / names.length);
+        double[][] rounds = new double[dbs.length][ROUNDS];
+        int found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int d = 0; d < dbs.length; d++) {
+                long start = System.nanoTime();
+                for (int r = 0; r < repeats; r++) {
+                    for (String name : names) {
+                        if (dbs[d].containsName(name)) found++;
+                    }
+                }
+                rounds[d][round] = (System.nanoTime() - start) / (double) (repeats * names.length);
+            }
+        }
+        ContactDBBenchmark.blackhole = found;
+        double[] medians = new double[dbs.length];
+        for (int d = 0; d < dbs.length; d++) {
+            Arrays.sort(rounds[d]);
+            medians[d] = rounds[d][ROUNDS / 2];
+        }
+        return medians;
+    }
+
+    private static String[] shuffled(List<String> names) {
+        List<String> copy = new ArrayList<>(names);
+        Collections.shuffle(copy, new Random(42));
+        return copy.toArray(new String[0]);
+    }
+
+    private static void run(String label, List<Contact> contacts) {
+        List<String> held = new ArrayList<>();
+        List<String> absent = new ArrayList<>();
+        for (Contact contact : contacts) {
+            held.add(contact.getName());
+            absent.add(contact.getName() + " Jr"); // as long as real names, and never held
+        }
+        String[] hits = shuffled(held);
+        String[] misses = shuffled(absent);
+
+        ContactsHashChained plain = new ContactsHashChained();
+        ContactsHashChained filtered = new ContactsHashChained();
+        plain.putAll(contacts);
+        filtered.putAll(contacts);
+        NameFilter filter = filtered.enableNameFilter();
+        ContactsHashChained[] dbs = {plain, filtered};
+        time(dbs, misses); // warm up
+
+        filter.resetCounts();
+        double[] miss = time(dbs, misses);
+        double fpr = filter.getFalsePositiveRate();
+        double[] hit = time(dbs, hits);
+        System.out.printf("%-22s %8d %8.1f %8.1f %8.1f %8.1f %8.4f %8.1f%n", label, contacts.size(),
+                miss[0], miss[1], hit[0], hit[1], fpr, filter.getBitCount() / (double) contacts.size());
+
+        for (int i = 0; i < hits.length / 2; i++) { // churn: replace half the names
+            plain.remove(hits[i]);
+            filtered.remove(hits[i]);
+            Contact replacement = new Contact(hits[i] + " Sr", "x");
+            plain.put(replacement);
+            filtered.put(replacement);
+        }
+        filter.resetCounts();
+        miss = time(dbs, misses);
+        System.out.printf("%-22s %8d %8.1f %8.1f %8s %8s %8.4f %8.1f  (%d rebuilds)%n", "  after churn", filtered.size(),
+                miss[0], miss[1], "", "", filter.getFalsePositiveRate(),
+                filter.getBitCount() / (double) filtered.size(), filter.getRebuildCount());
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-22s %8s %8s %8s %8s %8s %8s %8s%n", "dataset", "names",
+                "miss", "+filter", "hit", "+filter", "fp rate", "bits/nm");
+        for (String file : BenchData.CSV_FILES) {
+            run(file, BenchData.loadCsv(file));
+        }
+        String[] sizes = args.length > 0 ? args : new String[] {"1e5", "1e6"};
+        for (String size : sizes) {
+            int count = (int) Double.parseDouble(size);
+            run("synthetic:" + count, BenchData.synthetic(count));
+        }
+    }
+}
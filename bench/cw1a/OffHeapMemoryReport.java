@@ -0,0 +1,94 @@
+package cw1a;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Heap use and garbage collection cost of ContactsHashOffHeap against
+ * ContactsHashChained, at 1M and 10M contacts. For each, reports:
+ *   the time to put every contact;
+ *   the collections during the load, their total time and longest pause;
+ *   heap and direct memory in use afterwards, once collected;
+ *   how long a full collection takes with the database live, which is
+ *   what every old-generation collection pays for tracing it.
+ * Contacts are made one at a time as they are put, as BenchData.synthetic
+ * would make them, so the heap holds only what the database keeps.
+ *
+ * Arguments (optional): implementations (default chained,offheap), counts
+ * (default 1e6,1e7). 10M chained contacts need a heap of about 4GB:
+ * ant bench -Dbench.class=cw1a.OffHeapMemoryReport -Dbench.jvmargs=-Xmx4g
+ * Running one implementation per JVM gives the cleanest figures.
+ */
+public class OffHeapMemoryReport {
+
+    private static final AtomicLong maxPauseMs = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        String[] impls = (args.length > 0 ? args[0] : "chained,offheap").split(",");
+        String[] counts = (args.length > 1 ? args[1] : "1e6,1e7").split(",");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                    long ms = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo().getDuration();
+                    maxPauseMs.accumulateAndGet(ms, Math::max);
+                }
+            }, null, null);
+        }
+        System.out.printf("%-8s %9s %8s %6s %8s %9s %9s %10s %9s%n",
+                "impl", "contacts", "load ms", "GCs", "GC ms", "max pause", "heap MB", "direct MB", "full GC ms");
+        for (String countText : counts) {
+            int count = (int) Double.parseDouble(countText);
+            for (String impl : impls) {
+                IContactDB db = null;
+                collect();
+                long gcCount = gcCount(), gcMs = gcMs();
+                maxPauseMs.set(0);
+                long start = System.nanoTime();
+                db = impl.equals("offheap") ? new ContactsHashOffHeap() : new ContactsHashChained();
+                for (int i = 0; i < count; i++) {
+                    db.put(new Contact("Surname" + Integer.toString(i, 36) + ", First" + (i % 977), "member" + i + "@br00kes"));
+                }
+                double loadMs = (System.nanoTime() - start) / 1e6;
+                long loadGcs = gcCount() - gcCount, loadGcMs = gcMs() - gcMs, loadMaxPause = maxPauseMs.get();
+                start = System.nanoTime();
+                collect();
+                double fullGcMs = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%-8s %9d %8.0f %6d %8d %9d %9d %10d %9.0f%n", impl, count, loadMs, loadGcs, loadGcMs,
+                        loadMaxPause, heapUsed() >> 20, directUsed() >> 20, fullGcMs);
+                if (db.get("Surname0, First0") == null) throw new AssertionError("lost a contact");
+            }
+        }
+    }
+
+    private static void collect() {
+        System.gc();
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += gc.getCollectionCount();
+        return n;
+    }
+
+    private static long gcMs() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) ms += gc.getCollectionTime();
+        return ms;
+    }
+
+    private static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directUsed() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,117 @@
+package cw1a;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Load time of ParallelContactLoader at 1, 2, 4 and 8 threads against the
+ * sequential ContactFileReader, on a large file built from the bundled CSVs
+ * (plus the bundled files themselves), checking each time that the
+ * database ends up with identical contents. Into a ContactsHashChained
+ * only parsing runs in parallel, so parsing alone is reported too; into a
+ * ContactsHashConcurrent the puts run in parallel as well.
+ * Before timing, a file of rows full of awkward quoting (O"Brien, quoted
+ * commas and line breaks, "" escapes, repeated names) is loaded at many
+ * thread counts, so that chunk cuts land everywhere, and checked against
+ * the sequential reader. Any difference exits non-zero, with an
+ * AssertionError; ant check runs it on a small file.
+ * Args: rows, default 2000000.
+ */
+public class ParallelLoadBenchmark {
+
+    private static final int DEFAULT_ROWS = 2000000;
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    public static void main(String[] args) throws Exception {
+        for (String csv : BenchData.CSV_FILES) {
+            check(new File(csv), sequential(new File(csv)), load(new File(csv), 4, new ContactsHashChained()));
+        }
+        System.out.println("bundled CSVs: parallel contents identical to sequential");
+        File quoting = File.createTempFile("quoting", ".csv");
+        quoting.deleteOnExit();
+        writeAwkwardFile(quoting, 5000);
+        IContactDB expected = sequential(quoting);
+        for (int threads = 2; threads <= 64; threads++) {
+            check(quoting, expected, load(quoting, threads, new ContactsHashChained()));
+            check(quoting, expected, load(quoting, threads, new ContactsHashConcurrent()));
+        }
+        System.out.println("awkward quoting: parallel contents identical to sequential at 2 to 64 threads");
+
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+        File file = File.createTempFile("contacts", ".csv");
+        file.deleteOnExit();
+        CsvLoadBenchmark.writeFile(file, rows);
+        System.out.printf("%d rows, %.1f MB, %d processors%n", rows, file.length() / 1e6,
+                Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            expected = sequential(file);
+            System.out.printf("sequential          load %7.0f ms%n", (System.nanoTime() - start) / 1e6);
+            for (int threads : THREADS) {
+                start = System.nanoTime();
+                List<List<Contact>> chunks = new ParallelContactLoader(threads).readChunks(file);
+                double parseMs = (System.nanoTime() - start) / 1e6;
+                start = System.nanoTime();
+                IContactDB db = load(file, threads, new ContactsHashChained());
+                double loadMs = (System.nanoTime() - start) / 1e6;
+                check(file, expected, db);
+                start = System.nanoTime();
+                db = load(file, threads, new ContactsHashConcurrent());
+                double concurrentMs = (System.nanoTime() - start) / 1e6;
+                check(file, expected, db);
+                System.out.printf("parallel %d threads  load %7.0f ms  (parse only %7.0f ms, %d chunks)  into concurrent %7.0f ms%n",
+                        threads, loadMs, parseMs, chunks.size(), concurrentMs);
+            }
+        }
+    }
+
+    private static IContactDB sequential(File file) throws Exception {
+        ContactsHashChained db = new ContactsHashChained();
+        try (ContactFileReader reader = new ContactFileReader(file)) {
+            reader.loadInto(db);
+        }
+        return db;
+    }
+
+    private static IContactDB load(File file, int threads, IContactDB db) throws Exception {
+        new ParallelContactLoader(threads).load(file, db);
+        return db;
+    }
+
+    /**
+     * Writes rows whose quoting a parallel cut could misread: quotes inside
+     * unquoted fields, quoted fields holding commas, line breaks and ""
+     * escapes, text after a closing quote, CRLF line ends and blank lines.
+     * Names repeat, so which row of a name wins is checked too.
+     */
+    private static void writeAwkwardFile(File file, int rows) throws Exception {
+        String[] surnames = {"O\"Brien", "\"Smith, Jr\"", "\"Line\nBreak\"", "\"Said \"\"Hi\"\"\"", "D\"Arcy\"", "\"Tail\"ing", "Plain"};
+        String[] affiliations = {"\"Acme, Inc\"", "Quote\"Corp", "\"Multi\r\nLine, Ltd\"", "\"\"", "x\"\"y", "Plain"};
+        Random random = new Random(42);
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            for (int i = 0; i < rows; i++) {
+                out.write(surnames[random.nextInt(surnames.length)] + "," + random.nextInt(rows / 4) + ","
+                        + affiliations[random.nextInt(affiliations.length)] + "-" + i);
+                out.write(random.nextInt(3) == 0 ? "\r\n" : "\n");
+                if (random.nextInt(50) == 0) {
+                    out.write('\n');
+                }
+            }
+        }
+    }
+
+    private static void check(File file, IContactDB expected, IContactDB actual) throws Exception {
+        if (expected.size() != actual.size()) throw new AssertionError(file + ": sizes differ");
+        try (ContactFileReader reader = new ContactFileReader(file)) {
+            Contact contact;
+            while ((contact = reader.readContact()) != null) {
+                Contact e = expected.get(contact.getName());
+                Contact a = actual.get(contact.getName());
+                if (!e.toString().equals(a.toString())) throw new AssertionError(file + ": " + e + " vs " + a);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package cw1a;
+
+/**
+ * Records the latency of every put while ContactsHashChained grows from
+ * empty to a few million entries, once with the default incremental resize
+ * and once moving every bucket in a single step (the old stop-the-world
+ * behaviour), and prints a latency histogram summary for each.
+ * With incremental growth the tail (p99.99, max, puts over 1ms) no longer
+ * tracks the size of the table being resized.
+ * Give it room, e.g. -Dbench.jvmargs="-Xms3g -Xmx3g", so that GC pauses do
+ * not swamp the comparison.
+ */
+public class ResizeLatencyBenchmark {
+
+    private static final int DEFAULT_ENTRIES = 3000000;
+
+    private static LatencyHistogram run(Contact[] contacts, boolean stopTheWorld) {
+        ContactsHashChained db = new ContactsHashChained();
+        if (stopTheWorld) db.setMigrationStep(Integer.MAX_VALUE);
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (Contact contact : contacts) {
+            long start = System.nanoTime();
+            db.put(contact);
+            histogram.record(System.nanoTime() - start);
+        }
+        if (db.size() != contacts.length) throw new AssertionError("lost entries");
+        return histogram;
+    }
+
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ENTRIES;
+        Contact[] contacts = new Contact[entries];
+        for (int i = 0; i < entries; i++) {
+            contacts[i] = new Contact("Surname" + i + ", First" + (i % 977), "member" + i + "@br00kes");
+        }
+        run(contacts, true); // warm up
+        for (int round = 0; round < 2; round++) {
+            LatencyHistogram stopTheWorld = run(contacts, true);
+            LatencyHistogram incremental = run(contacts, false);
+            System.out.println("stop-the-world: " + stopTheWorld.summary() + " >1ms=" + stopTheWorld.countAbove(1000000));
+            System.out.println("incremental:    " + incremental.summary() + " >1ms=" + incremental.countAbove(1000000));
+        }
+    }
+}
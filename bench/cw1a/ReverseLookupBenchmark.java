@@ -0,0 +1,106 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Reverse lookups by affiliation and by email domain on a synthetic
+ * database: ContactsHashChained.withAffiliation and withDomain against a
+ * scan of every contact, the only way to answer them without the index,
+ * and what the index costs: building it, and keeping it up to date on put.
+ * Half the contacts are at one of FIRMS firms, the rest have addresses at
+ * one of DOMAINS domains. Checks first that both ways find the same contacts.
+ *
+ * Arguments (optional): contacts (default 1000000), lookups (default 10000).
+ */
+public class ReverseLookupBenchmark {
+
+    private static final int FIRMS = 10000;
+    private static final int DOMAINS = 500;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        int lookups = args.length > 1 ? (int) Double.parseDouble(args[1]) : 10000;
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String affiliation = i % 2 == 0 ? "Firm " + (i / 2) % FIRMS : "member" + i + "@domain" + (i / 2) % DOMAINS + ".org";
+            contacts.add(new Contact("Surname" + Integer.toString(i, 36) + ", First" + (i % 977), affiliation));
+        }
+        ContactsHashChained db = new ContactsHashChained();
+        for (Contact contact : contacts) { // warm up put, so neither load below pays for compiling it
+            db.put(contact);
+        }
+        db = new ContactsHashChained();
+        System.gc();
+        long start = System.nanoTime();
+        for (Contact contact : contacts) {
+            db.put(contact);
+        }
+        System.out.printf("put without the index: %.0f ns/put%n", (System.nanoTime() - start) / (double) count);
+        start = System.nanoTime();
+        db.withAffiliation("Firm 0");
+        System.out.printf("first lookup, building the index: %.3f s%n", (System.nanoTime() - start) / 1e9);
+        db = new ContactsHashChained();
+        System.gc();
+        db.withAffiliation("Firm 0"); // builds the empty index, which every put then keeps up to date
+        start = System.nanoTime();
+        for (Contact contact : contacts) {
+            db.put(contact);
+        }
+        System.out.printf("put with the index:    %.0f ns/put%n", (System.nanoTime() - start) / (double) count);
+
+        for (int k = 0; k < 5; k++) {
+            if (!new HashSet<>(db.withAffiliation("Firm " + k)).equals(new HashSet<>(scan(db, "Firm " + k, false)))
+                    || !new HashSet<>(db.withDomain("domain" + k + ".org")).equals(new HashSet<>(scan(db, "domain" + k + ".org", true)))) {
+                throw new AssertionError("index and scan disagree");
+            }
+        }
+        System.out.println("index and scan find the same contacts");
+
+        for (int round = 0; round < 2; round++) {
+            long found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                found += db.withAffiliation("Firm " + i % FIRMS).size();
+            }
+            report("withAffiliation", lookups, found, System.nanoTime() - start);
+            found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                found += db.withDomain("domain" + i % DOMAINS + ".org").size();
+            }
+            report("withDomain", lookups, found, System.nanoTime() - start);
+            int scans = Math.max(1, lookups / 1000); // a scan is slow enough that a few give a steady figure
+            found = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < scans; i++) {
+                found += scan(db, "Firm " + i % FIRMS, false).size();
+            }
+            report("scan by affiliation", scans, found, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the contacts with an affiliation, or with an address at a domain, found by visiting every contact
+     */
+    private static List<Contact> scan(ContactsHashChained db, String key, boolean domain) {
+        List<Contact> matches = new ArrayList<>();
+        ContactPage page = null;
+        do {
+            page = db.page(page == null ? null : page.getResumeToken(), 4096);
+            for (Contact contact : page.getContacts()) {
+                if (domain ? key.equals(AffiliationIndex.domainOf(contact.getAffiliation()))
+                        : key.equals(contact.getAffiliation())) {
+                    matches.add(contact);
+                }
+            }
+        } while (!page.isLast());
+        return matches;
+    }
+
+    private static void report(String what, int lookups, long found, long nanos) {
+        System.out.printf("%-20s %7d lookups, %6.1f contacts each: %10.1f us/lookup%n",
+                what, lookups, found / (double) lookups, nanos / 1e3 / lookups);
+    }
+}
@@ -0,0 +1,180 @@
+package cw1a;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Cold-start time from CSV (sequential ContactFileReader and
+ * ParallelContactLoader) against restoring a ContactSnapshot of the same
+ * database, on a large file built from the bundled CSVs, checking that the
+ * restored database lists exactly the same contacts. Checks first that a
+ * snapshot whose names are out of order or repeated is refused, and that a
+ * save that fails leaves no temporary file behind, and that a restored
+ * default table still reseeds when flooded with colliding names. Any failed check exits
+ * non-zero, with an AssertionError; ant check runs it on a small file.
+ *
+ * Arguments (optional): rows (default 2000000). Each way of loading is
+ * mostly allocation, so a young generation big enough to hold a whole
+ * database keeps the times about loading rather than copying collections,
+ * e.g. -Dbench.jvmargs="-Xms4g -Xmx4g -Xmn2500m" (5e6 rows need about twice that).
+ */
+public class SnapshotBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        checkFailures();
+        System.out.println("corrupt snapshots refused, failed save cleaned up");
+        checkReseed();
+        System.out.println("restored table reseeds under a flood");
+        int rows = args.length > 0 ? (int) Double.parseDouble(args[0]) : 2000000;
+        File csv = File.createTempFile("contacts", ".csv");
+        csv.deleteOnExit();
+        CsvLoadBenchmark.writeFile(csv, rows);
+        File snapshot = File.createTempFile("contacts", ContactSnapshot.EXTENSION);
+        snapshot.deleteOnExit();
+
+        ContactsHashChained expected = new ContactsHashChained();
+        new ParallelContactLoader().load(csv, expected);
+        long start = System.nanoTime();
+        ContactSnapshot.save(expected, snapshot);
+        double saveMs = (System.nanoTime() - start) / 1e6;
+        check(expected, ContactSnapshot.load(snapshot));
+        System.out.printf("%d contacts: CSV %.1f MB, snapshot %.1f MB saved in %.0f ms, restores identically%n",
+                expected.size(), csv.length() / 1e6, snapshot.length() / 1e6, saveMs);
+        expected = null;
+
+        for (int round = 0; round < 3; round++) {
+            double csvMs = time(() -> {
+                ContactsHashChained db = new ContactsHashChained();
+                try (ContactFileReader reader = new ContactFileReader(csv)) {
+                    reader.loadInto(db);
+                }
+                return db;
+            });
+            double parallelMs = time(() -> {
+                ContactsHashChained db = new ContactsHashChained();
+                new ParallelContactLoader().load(csv, db);
+                return db;
+            });
+            double restoreMs = time(() -> ContactSnapshot.load(snapshot));
+            System.out.printf("CSV %6.0f ms   parallel CSV %6.0f ms   snapshot restore %6.0f ms%n",
+                    csvMs, parallelMs, restoreMs);
+        }
+    }
+
+    /**
+     * Saves two contacts, then edits the file's names so that they are out
+     * of order, and then the same, and checks that each load is refused.
+     * Then saves over a directory, which cannot be replaced, and checks
+     * that the temporary file is gone.
+     */
+    private static void checkFailures() throws Exception {
+        ContactsHashChained db = new ContactsHashChained();
+        db.put(new Contact("Aaa, X", "1"));
+        db.put(new Contact("Bbb, Y", "2"));
+        File file = File.createTempFile("corrupt", ContactSnapshot.EXTENSION);
+        file.deleteOnExit();
+        ContactSnapshot.save(db, file);
+        byte[] saved = Files.readAllBytes(file.toPath());
+        String[][] edits = {{"Aaa, X", "Ccc, X"}, {"Bbb, Y", "Aaa, X"}}; // out of order, repeated
+        for (String[] edit : edits) {
+            Files.write(file.toPath(), replace(saved, edit[0], edit[1]));
+            try {
+                ContactSnapshot.load(file);
+                throw new AssertionError("loaded a snapshot with " + edit[0] + " changed to " + edit[1]);
+            } catch (IOException expected) {
+                // refused, as it should be
+            }
+        }
+
+        File directory = Files.createTempDirectory("snapshot").toFile();
+        File inside = new File(directory, "keep");
+        inside.createNewFile(); // so the directory cannot be replaced
+        File temp = new File(directory.getPath() + ".tmp");
+        try {
+            ContactSnapshot.save(db, directory);
+            throw new AssertionError("saved over a directory");
+        } catch (IOException expected) {
+            if (temp.exists()) throw new AssertionError(temp + " left behind by a failed save");
+        } finally {
+            inside.delete();
+            directory.delete();
+            temp.delete();
+        }
+    }
+
+    /**
+     * Saves and restores a default table, then floods the restored one with
+     * names that collide under String.hashCode, which must make it reseed
+     * as a new default table does.
+     */
+    private static void checkReseed() throws Exception {
+        ContactsHashChained db = new ContactsHashChained();
+        db.put(new Contact("Aaa, X", "1"));
+        File file = File.createTempFile("reseed", ContactSnapshot.EXTENSION);
+        file.deleteOnExit();
+        ContactSnapshot.save(db, file);
+        ContactsHashChained restored = ContactSnapshot.load(file);
+        for (String name : ChainLengthBenchmark.collidingNames(4096)) {
+            restored.put(new Contact(name, "x"));
+        }
+        if (!restored.isReseeded()) throw new AssertionError("a restored table did not reseed under a flood");
+    }
+
+    /**
+     * @return bytes with the UTF-8 of from, which must be there, replaced
+     * by that of to, the same length
+     */
+    private static byte[] replace(byte[] bytes, String from, String to) {
+        byte[] f = from.getBytes(StandardCharsets.UTF_8);
+        byte[] t = to.getBytes(StandardCharsets.UTF_8);
+        byte[] copy = bytes.clone();
+        for (int i = 0; i + f.length <= copy.length; i++) {
+            boolean match = true;
+            for (int j = 0; j < f.length && match; j++) {
+                match = copy[i + j] == f[j];
+            }
+            if (match) {
+                System.arraycopy(t, 0, copy, i, t.length);
+                return copy;
+            }
+        }
+        throw new AssertionError(from + " not in snapshot");
+    }
+
+    private interface Load {
+        IContactDB run() throws Exception;
+    }
+
+    /**
+     * Times one cold start, after collecting the previous one's database so
+     * each starts from the same empty heap.
+     * @return the time taken, in ms
+     */
+    private static double time(Load load) throws Exception {
+        System.gc();
+        long start = System.nanoTime();
+        IContactDB db = load.run();
+        double ms = (System.nanoTime() - start) / 1e6;
+        if (db.size() == 0) throw new AssertionError("nothing loaded");
+        return ms;
+    }
+
+    private static void check(ContactsHashChained expected, ContactsHashChained actual) {
+        if (expected.size() != actual.size() || expected.getCapacity() != actual.getCapacity()) {
+            throw new AssertionError("restored size or capacity differs");
+        }
+        ContactPage e = null, a = null;
+        do {
+            e = expected.page(e == null ? null : e.getResumeToken(), 10000);
+            a = actual.page(a == null ? null : a.getResumeToken(), 10000);
+            if (!e.getContacts().toString().equals(a.getContacts().toString())) {
+                throw new AssertionError("restored contacts differ");
+            }
+        } while (!e.isLast());
+        for (Contact contact : e.getContacts()) {
+            if (actual.get(contact.getName()) == null) throw new AssertionError(contact + " not found after restore");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Times every get, in a shuffled order, against ContactsHashChained and
+ * ContactsHashCuckoo holding the same contacts, and prints p50, p99, p99.9
+ * and max latency and the most buckets, chain nodes or stash entries any one
+ * get looked at. Datasets: each bundled CSV file, a synthetic set, and names
+ * built to collide under String.hashCode (as ChainLengthBenchmark uses),
+ * which put every one in the chained table's one bucket but cannot trouble
+ * the cuckoo table's seeded hash.
+ * Each dataset is looked up in passes until at least the given number of
+ * gets or MAX_NANOS have been timed, after one untimed pass that checks
+ * every get and containsName, and that names not put are not found. No get
+ * of the cuckoo table may look at more than its two buckets and its stash.
+ * Any failed check exits non-zero, with an AssertionError; ant check runs
+ * it on small sets. Reading the clock around each get adds some 40ns to
+ * every figure.
+ * Args: [synthetic count, default 1e6] [colliding count, default 8192]
+ * [gets per dataset, default 2e6]
+ */
+public class TailLatencyBenchmark {
+
+    private static final int DEFAULT_MIN_GETS = 2000000;
+    private static final long MAX_NANOS = 5000000000L;
+
+    private static void run(String label, List<Contact> contacts, int minGets) {
+        Map<String, String> expected = new HashMap<>(); // the affiliation of each name's last put
+        for (Contact contact : contacts) {
+            expected.put(contact.getName(), contact.getAffiliation());
+        }
+        List<String> names = new ArrayList<>(expected.keySet());
+        Collections.shuffle(names, new Random(42));
+        String[] order = names.toArray(new String[0]);
+        IContactDB[] dbs = {new ContactsHashChained(), new ContactsHashCuckoo()};
+        String[] dbNames = {"chained", "cuckoo"};
+        for (int d = 0; d < dbs.length; d++) {
+            IContactDB db = dbs[d];
+            for (Contact contact : contacts) {
+                db.put(contact);
+            }
+            check(label + " " + dbNames[d], db, order, expected); // and warm up
+            LatencyHistogram latency = new LatencyHistogram();
+            long maxVisited = 0;
+            long began = System.nanoTime();
+            do {
+                maxVisited = Math.max(maxVisited, lookUp(db, order, latency));
+            } while (latency.getTotal() < minGets && System.nanoTime() - began < MAX_NANOS);
+            if (db instanceof ContactsHashCuckoo && maxVisited > 2 + ((ContactsHashCuckoo) db).getStashCount()) {
+                throw new AssertionError(label + ": a cuckoo get visited " + maxVisited + ", more than two buckets and the stash");
+            }
+            System.out.printf("%-28s %-8s n=%-8d p50=%6d p99=%6d p99.9=%7d max=%9d ns, most visited %d%n",
+                    label, dbNames[d], latency.getTotal(), latency.percentile(50), latency.percentile(99),
+                    latency.percentile(99.9), latency.getMax(), maxVisited);
+        }
+    }
+
+    /**
+     * Checks that the database holds exactly the expected contacts: every
+     * name is found with its last affiliation, and the same names with a
+     * suffix are not.
+     */
+    private static void check(String label, IContactDB db, String[] names, Map<String, String> expected) {
+        if (db.size() != expected.size()) {
+            throw new AssertionError(label + ": size " + db.size() + ", expected " + expected.size());
+        }
+        for (String name : names) {
+            Contact contact = db.get(name);
+            if (contact == null || !contact.getName().equals(name) || !contact.getAffiliation().equals(expected.get(name))
+                    || !db.containsName(name)) {
+                throw new AssertionError(label + ": get " + name + " returned " + contact);
+            }
+            if (db.containsName(name + " Jr") || db.get(name + " Jr") != null) {
+                throw new AssertionError(label + ": found " + name + " Jr, which was never put");
+            }
+        }
+    }
+
+    /**
+     * Gets every name once, timing each.
+     * @return the most any one get visited
+     */
+    private static long lookUp(IContactDB db, String[] names, LatencyHistogram latency) {
+        long maxVisited = 0;
+        Object last = null;
+        for (String name : names) {
+            db.resetTotalVisited();
+            long start = System.nanoTime();
+            Contact contact = db.get(name);
+            latency.record(System.nanoTime() - start);
+            maxVisited = Math.max(maxVisited, db.getTotalVisited());
+            last = contact;
+        }
+        ContactDBBenchmark.blackhole = last;
+        return maxVisited;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int synthetic = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        int colliding = args.length > 1 ? (int) Double.parseDouble(args[1]) : 8192;
+        int minGets = args.length > 2 ? (int) Double.parseDouble(args[2]) : DEFAULT_MIN_GETS;
+        for (String file : BenchData.CSV_FILES) {
+            run(file, BenchData.loadCsv(file), minGets);
+        }
+        run("synthetic:" + synthetic, BenchData.synthetic(synthetic), minGets);
+        List<Contact> adversarial = new ArrayList<>();
+        for (String name : ChainLengthBenchmark.collidingNames(colliding)) {
+            adversarial.add(new Contact(name, "x"));
+        }
+        run("colliding:" + colliding, adversarial, minGets);
+    }
+}
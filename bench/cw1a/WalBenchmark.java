@@ -0,0 +1,147 @@
+package cw1a;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Put throughput of DurableContactDB at a range of sync intervals, against
+ * the in-memory ContactsHashChained it wraps, then the time to reopen
+ * (replay the log) and to compact. Interval 0, a sync per put, is timed
+ * over far fewer puts, since each one waits for the disk.
+ * Checks first that what the log and snapshots hold after a sync, and after
+ * close, reopens to exactly the contacts put and not removed, with
+ * compaction happening throughout; any difference exits non-zero, with an
+ * AssertionError. ant check runs it over few puts.
+ *
+ * Arguments (optional): puts (default 1000000).
+ */
+public class WalBenchmark {
+
+    private static final long[] INTERVALS = {100, 10, 1};
+    private static final int SYNC_EVERY_PUT_COUNT = 2000;
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? (int) Double.parseDouble(args[0]) : 1000000;
+        List<Contact> contacts = BenchData.synthetic(count);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override public void write(int b) { }
+        }));
+        try {
+            checkDurability();
+            console.println("durability: every sync point and reopen restores exactly what was written");
+            for (int round = 0; round < 2; round++) {
+                long start = System.nanoTime();
+                ContactsHashChained memory = new ContactsHashChained();
+                for (Contact contact : contacts) memory.put(contact);
+                report(console, "in memory", count, System.nanoTime() - start);
+
+                for (long interval : INTERVALS) {
+                    run(console, contacts, count, interval);
+                }
+                run(console, contacts, SYNC_EVERY_PUT_COUNT, 0);
+            }
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Puts, overwrites and removes names at random, checking every return
+     * value against a map of what should be there. Every CHECK_EVERY changes
+     * it syncs and opens a copy of the directory as it is on disk then, as a
+     * crash would leave it, and at the end it closes and reopens the
+     * database itself; each must hold exactly the map's contacts. The log is
+     * compacted every few KB, so both snapshots and logs are replayed.
+     */
+    private static void checkDurability() throws Exception {
+        final int changes = 20000, names = 2000, checkEvery = 2500;
+        String[] affiliations = {"plain", "Acme, Inc", "Quote\"Corp", "Line\nBreak", "Zo\u00eb", ""};
+        File directory = Files.createTempDirectory("wal").toFile();
+        File copy = Files.createTempDirectory("walcopy").toFile();
+        Map<String, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        try {
+            DurableContactDB db = new DurableContactDB(directory, 5, 16 * 1024);
+            for (int i = 1; i <= changes; i++) {
+                String name = "Surname" + random.nextInt(names) + ", First";
+                if (random.nextInt(3) == 0) {
+                    Contact removed = db.remove(name);
+                    String was = expected.remove(name);
+                    check(removed == null ? was == null : removed.getAffiliation().equals(was), "remove " + name + " returned " + removed);
+                } else {
+                    String affiliation = affiliations[random.nextInt(affiliations.length)] + i;
+                    Contact previous = db.put(new Contact(name, affiliation));
+                    String was = expected.put(name, affiliation);
+                    check(previous == null ? was == null : previous.getAffiliation().equals(was), "put " + name + " returned " + previous);
+                }
+                if (i % checkEvery == 0) {
+                    db.sync();
+                    for (File file : copy.listFiles()) file.delete();
+                    for (File file : directory.listFiles()) {
+                        Files.copy(file.toPath(), new File(copy, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    try (DurableContactDB reopened = new DurableContactDB(copy)) {
+                        compare(expected, reopened, "copy after " + i + " changes");
+                    }
+                }
+            }
+            db.close();
+            try (DurableContactDB reopened = new DurableContactDB(directory)) {
+                compare(expected, reopened, "reopened after close");
+            }
+        } finally {
+            for (File dir : new File[] {directory, copy}) {
+                for (File file : dir.listFiles()) file.delete();
+                dir.delete();
+            }
+        }
+    }
+
+    private static void compare(Map<String, String> expected, IContactDB db, String what) {
+        check(db.size() == expected.size(), what + ": " + db.size() + " contacts, expected " + expected.size());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            Contact contact = db.get(entry.getKey());
+            check(contact != null && contact.getAffiliation().equals(entry.getValue()),
+                    what + ": " + entry.getKey() + " is " + contact + ", expected " + entry.getValue());
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new AssertionError(message);
+    }
+
+    private static void run(PrintStream console, List<Contact> contacts, int count, long interval) throws Exception {
+        File directory = Files.createTempDirectory("wal").toFile();
+        try {
+            long start = System.nanoTime();
+            try (DurableContactDB db = new DurableContactDB(directory, interval, Long.MAX_VALUE)) {
+                for (int i = 0; i < count; i++) db.put(contacts.get(i));
+            }
+            report(console, "sync " + interval + " ms", count, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (DurableContactDB db = new DurableContactDB(directory, interval, Long.MAX_VALUE)) {
+                double replayMs = (System.nanoTime() - start) / 1e6;
+                if (db.size() != count) throw new AssertionError("replay restored " + db.size() + " of " + count);
+                start = System.nanoTime();
+                db.compact();
+                console.printf("%14s  reopen (replay) %6.0f ms, compact %6.0f ms%n", "", replayMs, (System.nanoTime() - start) / 1e6);
+            }
+        } finally {
+            for (File file : directory.listFiles()) file.delete();
+            directory.delete();
+        }
+    }
+
+    private static void report(PrintStream console, String label, int count, long nanos) {
+        console.printf("%-14s %9d puts %10.0f puts/sec %8.0f ns/put%n", label, count, count / (nanos / 1e9), nanos / (double) count);
+    }
+}
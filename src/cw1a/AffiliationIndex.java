@@ -0,0 +1,172 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A secondary index of contacts by affiliation, and by email domain for
+ * email-style affiliations (local@domain), for reverse lookups: everyone at
+ * a firm, or every address @br00kes.
+ *
+ * Each affiliation and each domain maps to the contact that has it or, once
+ * two or more do, to a map of them by name, so add and remove are O(1) and
+ * most affiliations, held by one contact, cost a single map entry. A lookup
+ * is one hash lookup and a copy of the k matches, O(k) however large the
+ * database. Matches come in no particular order: keeping them sorted would
+ * cost every put O(log k) name comparisons, and sorting them on the way
+ * out cost a domain lookup of 1000 matches seven times as much as the copy.
+ * Affiliations match exactly; domains match ignoring case, as email
+ * domains do.
+ *
+ * The index holds whatever it is given: the database that owns it must
+ * add, replace and remove contacts in step with its own contents.
+ */
+public class AffiliationIndex {
+
+    private final Map<String, Object> byAffiliation = new HashMap<>(); // each key's one Contact, or a Map<String, Contact> by name of several
+    private final Map<String, Object> byDomain = new HashMap<>();
+
+    /**
+     * Adds a contact under its affiliation and domain.
+     * @pre contact not null, and no contact with its name is in the index
+     * @param contact the contact to add
+     */
+    public void add(Contact contact) {
+        assert contact != null;
+        add(byAffiliation, contact.getAffiliation(), contact);
+        String domain = domainOf(contact.getAffiliation());
+        if (domain != null) {
+            add(byDomain, domain, contact);
+        }
+    }
+
+    /**
+     * Removes a contact from under its affiliation and domain.
+     * @pre contact not null, and is the contact added with its name
+     * @param contact the contact to remove
+     */
+    public void remove(Contact contact) {
+        assert contact != null;
+        remove(byAffiliation, contact.getAffiliation(), contact.getName());
+        String domain = domainOf(contact.getAffiliation());
+        if (domain != null) {
+            remove(byDomain, domain, contact.getName());
+        }
+    }
+
+    /**
+     * Replaces a contact with another of the same name, which may have a
+     * different affiliation.
+     * @pre previous in the index, replacement not null, same names
+     * @param previous the contact held now
+     * @param replacement the contact to hold instead
+     */
+    public void replace(Contact previous, Contact replacement) {
+        assert previous.getName().equals(replacement.getName());
+        remove(previous);
+        add(replacement);
+    }
+
+    /**
+     * Empties the index.
+     * @pre true
+     */
+    public void clear() {
+        byAffiliation.clear();
+        byDomain.clear();
+    }
+
+    /**
+     * @pre affiliation not null
+     * @param affiliation the affiliation to look up, matched exactly
+     * @return the contacts with that affiliation, in no particular order
+     */
+    public List<Contact> withAffiliation(String affiliation) {
+        assert affiliation != null;
+        return matches(byAffiliation.get(affiliation));
+    }
+
+    /**
+     * @pre domain not null
+     * @param domain an email domain, with or without a leading @, matched ignoring case
+     * @return the contacts whose affiliation is an address at that domain,
+     * in no particular order
+     */
+    public List<Contact> withDomain(String domain) {
+        assert domain != null;
+        String key = domain.startsWith("@") ? domain.substring(1) : domain;
+        return matches(byDomain.get(key.toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * @pre affiliation not null
+     * @param affiliation the affiliation to count
+     * @return how many contacts have it
+     */
+    public int countAffiliation(String affiliation) {
+        assert affiliation != null;
+        Object contacts = byAffiliation.get(affiliation);
+        return contacts == null ? 0 : contacts instanceof Contact ? 1 : ((Map<?, ?>) contacts).size();
+    }
+
+    /**
+     * @return the domain of an email-style affiliation in lower case, or null
+     * if it is not one
+     */
+    static String domainOf(String affiliation) {
+        int at = affiliation.lastIndexOf('@');
+        if (at < 0 || at == affiliation.length() - 1) {
+            return null;
+        }
+        return affiliation.substring(at + 1).toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void add(Map<String, Object> index, String key, Contact contact) {
+        Object held = index.get(key);
+        if (held == null) {
+            index.put(key, contact);
+        } else if (held instanceof Contact) { // a second contact for this key
+            Map<String, Contact> contacts = new HashMap<>();
+            contacts.put(((Contact) held).getName(), (Contact) held);
+            contacts.put(contact.getName(), contact);
+            index.put(key, contacts);
+        } else {
+            ((Map<String, Contact>) held).put(contact.getName(), contact);
+        }
+    }
+
+    private static void remove(Map<String, Object> index, String key, String name) {
+        Object held = index.get(key);
+        if (held instanceof Contact) {
+            if (((Contact) held).getName().equals(name)) {
+                index.remove(key); // so affiliations nobody has any more do not accumulate
+            }
+        } else if (held != null) {
+            Map<?, ?> contacts = (Map<?, ?>) held;
+            contacts.remove(name);
+            if (contacts.size() == 1) { // back to one contact: hold it directly again
+                index.put(key, contacts.values().iterator().next());
+            }
+        }
+    }
+
+    private static List<Contact> matches(Object held) {
+        if (held == null) {
+            return Collections.<Contact>emptyList();
+        }
+        List<Contact> contacts = new ArrayList<>();
+        if (held instanceof Contact) {
+            contacts.add((Contact) held);
+        } else {
+            for (Object contact : ((Map<?, ?>) held).values()) {
+                contacts.add((Contact) contact);
+            }
+        }
+        return contacts;
+    }
+}
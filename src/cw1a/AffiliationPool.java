@@ -0,0 +1,335 @@
+package cw1a;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A symbol table of affiliations: each distinct affiliation is stored once
+ * and given an int id, numbered from 0 in the order first seen. A database
+ * keeps just the id for each contact, in the Contact that pooled returns,
+ * and two affiliations in one pool are equal exactly when their ids are.
+ *
+ * The pool holds no String per affiliation. Every affiliation's characters
+ * are kept one after another in a single UTF-8 byte array, so a distinct
+ * affiliation costs its bytes, the int where they start and its slot in
+ * the lookup table, where a String of its own would cost a 24-byte String
+ * object and a 16-byte array header as well. The arrays grow by half, not
+ * double, to keep the room they hold in reserve small. get builds the
+ * String each time it is asked for one.
+ *
+ * With shareDomains, an email-style affiliation (local@domain) is kept as
+ * its local part and the id of its domain, itself held once in a second
+ * pool, so the thousands of addresses @br00kes store that suffix once.
+ *
+ * Affiliations are looked up in an open-addressed table of ids, probed
+ * linearly and kept at most half full. A byte array beside it holds the
+ * top 8 bits of each slot's affiliation's hash, so a probe compares bytes
+ * only when those match; growing the table hashes every affiliation again,
+ * O(1) amortised per intern. Ids are never reused: an affiliation no
+ * contact has any more keeps its id.
+ *
+ * A pool holds at most MAX_SIZE affiliations, the most a table of the
+ * largest power-of-two length keeps half full, and MAX_TEXT bytes of them.
+ * Once full, pooled leaves a contact with a new affiliation as it is, so a
+ * database keeps taking contacts, unpooled, however many there are.
+ */
+public class AffiliationPool {
+
+    private static final int INITIAL_CAPACITY = 64; // ids, and slots in the table (a power of two)
+    private static final int MAX_SLOTS = 1 << 30;   // the longest power-of-two array
+    private static final int MAX_SIZE = MAX_SLOTS / 2;      // affiliations, so the table is never more than half full
+    private static final int MAX_TEXT = Integer.MAX_VALUE - 8; // bytes, the longest array a JVM reliably allocates
+
+    private final AffiliationPool domainPool; // null unless domains are shared
+    private byte[] text = new byte[INITIAL_CAPACITY * 16]; // each affiliation, or its local part if it has a domain, in UTF-8, one after another
+    private int textLength = 0;
+    private int[] starts = new int[INITIAL_CAPACITY + 1];  // id's bytes are text[starts[id] .. starts[id + 1])
+    private int[] domains;                                 // the domain's id in domainPool, or -1; null unless domains are shared
+    private int size = 0;
+    private int[] slots = new int[INITIAL_CAPACITY * 2];    // id + 1 of the affiliation in each slot; 0 if empty
+    private byte[] tags = new byte[slots.length];           // the top 8 bits of the hash of the affiliation in each slot
+    private int mask = slots.length - 1;
+
+    /**
+     * A contact as a pooled database stores it: its name and the id of its
+     * affiliation, which getAffiliation builds from the pool when asked.
+     */
+    private static final class PooledContact extends Contact {
+        private final AffiliationPool pool;
+        private final int affiliation;
+
+        PooledContact(String name, AffiliationPool pool, int affiliation) {
+            super(name, null); // the pool holds the affiliation
+            this.pool = pool;
+            this.affiliation = affiliation;
+        }
+
+        @Override
+        public String getAffiliation() {
+            return pool.get(affiliation);
+        }
+    }
+
+    /**
+     * A pool that keeps every affiliation whole.
+     */
+    public AffiliationPool() {
+        this(false);
+    }
+
+    /**
+     * @param shareDomains whether to store email-style affiliations as local
+     * part and shared domain
+     */
+    public AffiliationPool(boolean shareDomains) {
+        this.domainPool = shareDomains ? new AffiliationPool(false) : null;
+        this.domains = shareDomains ? new int[INITIAL_CAPACITY] : null;
+    }
+
+    /**
+     * @pre true
+     * @return the number of distinct affiliations held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @pre true
+     * @return whether email-style affiliations share their domains
+     */
+    public boolean sharesDomains() {
+        return domainPool != null;
+    }
+
+    /**
+     * Returns the id of an affiliation, adding it if it is new.
+     * @pre affiliation not null
+     * @param affiliation the affiliation
+     * @return its id, in 0 .. size()-1
+     * @throws IllegalStateException if it is new and the pool is full
+     */
+    public int intern(String affiliation) {
+        int id = tryIntern(affiliation);
+        if (id < 0) {
+            throw new IllegalStateException("affiliation pool full");
+        }
+        return id;
+    }
+
+    /**
+     * As intern, but answering -1 rather than throwing if the pool is full.
+     */
+    private int tryIntern(String affiliation) {
+        assert affiliation != null;
+        int h = affiliation.hashCode();
+        int at = domainPool == null ? -1 : domainAt(affiliation);
+        int pos = findPos(affiliation, h, at);
+        if (slots[pos] != 0) {
+            return slots[pos] - 1;
+        }
+        String text = at > 0 ? affiliation.substring(0, at) : affiliation;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (size == MAX_SIZE || bytes.length > MAX_TEXT - textLength) {
+            return -1;
+        }
+        int domain = -1;
+        if (at > 0 && (domain = domainPool.tryIntern(affiliation.substring(at + 1))) < 0) {
+            return -1;
+        }
+        if (size + 1 == starts.length) {
+            starts = Arrays.copyOf(starts, grown(starts.length, MAX_SIZE + 1));
+            if (domains != null) domains = Arrays.copyOf(domains, starts.length - 1);
+        }
+        int id = size++;
+        append(bytes);
+        if (domains != null) domains[id] = domain;
+        starts[id + 1] = textLength;
+        slots[pos] = id + 1;
+        tags[pos] = tag(h);
+        if (size * 2 > slots.length && slots.length < MAX_SLOTS) { // keep the table at most half full
+            growTable();
+        }
+        return id;
+    }
+
+    /**
+     * @pre affiliation not null
+     * @param affiliation the affiliation to look up
+     * @return its id, or -1 if it has none
+     */
+    public int idOf(String affiliation) {
+        assert affiliation != null;
+        int at = domainPool == null ? -1 : domainAt(affiliation);
+        return slots[findPos(affiliation, affiliation.hashCode(), at)] - 1;
+    }
+
+    /**
+     * @pre contact not null
+     * @param contact a contact
+     * @return the id of its affiliation, or -1 if it has none; read straight
+     * from a contact that pooled returned, without hashing anything
+     */
+    public int idOf(Contact contact) {
+        assert contact != null;
+        if (contact instanceof PooledContact && ((PooledContact) contact).pool == this) {
+            return ((PooledContact) contact).affiliation;
+        }
+        return idOf(contact.getAffiliation());
+    }
+
+    /**
+     * Returns a contact equal to the one given, in name and affiliation, that
+     * holds only its affiliation's id, adding the affiliation if it is new.
+     * Its getAffiliation builds a new String from the pool on every call.
+     * @pre contact not null
+     * @param contact the contact to store
+     * @return the pooled contact; contact itself if it already is one of
+     * this pool's, or if its affiliation is new and the pool is full
+     */
+    public Contact pooled(Contact contact) {
+        assert contact != null;
+        if (contact instanceof PooledContact && ((PooledContact) contact).pool == this) {
+            return contact;
+        }
+        int id = tryIntern(contact.getAffiliation());
+        return id < 0 ? contact : new PooledContact(contact.getName(), this, id);
+    }
+
+    /**
+     * @pre 0 <= id < size()
+     * @param id an id returned by intern
+     * @return the affiliation with that id
+     */
+    public String get(int id) {
+        assert 0 <= id && id < size;
+        String local = new String(text, starts[id], starts[id + 1] - starts[id], StandardCharsets.UTF_8);
+        return !hasDomain(id) ? local : local + "@" + domainPool.get(domains[id]);
+    }
+
+    /**
+     * @pre 0 <= id < size()
+     * @param id an id returned by intern
+     * @return the domain of that affiliation if it is email-style and
+     * domains are shared, otherwise null
+     */
+    public String domainOf(int id) {
+        assert 0 <= id && id < size;
+        return !hasDomain(id) ? null : domainPool.get(domains[id]);
+    }
+
+    /**
+     * @pre true
+     * @return the bytes of affiliation text held, whole or local parts, and
+     * in the domain pool
+     */
+    public long storedBytes() {
+        return domainPool == null ? textLength : textLength + domainPool.storedBytes();
+    }
+
+    /**
+     * @return the index of the '@' that splits an email-style affiliation
+     * into local part and domain, or -1 if it is not one
+     */
+    private static int domainAt(String affiliation) {
+        int at = affiliation.lastIndexOf('@');
+        return at > 0 && at < affiliation.length() - 1 ? at : -1;
+    }
+
+    private boolean hasDomain(int id) {
+        return domains != null && domains[id] >= 0;
+    }
+
+    /**
+     * @return length grown by half, but no more than limit
+     */
+    private static int grown(int length, int limit) {
+        return (int) Math.min(length + (long) (length >> 1), limit);
+    }
+
+    private static byte tag(int hash) {
+        return (byte) (hash >>> 24);
+    }
+
+    private void append(byte[] bytes) {
+        if (textLength + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(grown(text.length, MAX_TEXT), textLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, text, textLength, bytes.length);
+        textLength += bytes.length;
+    }
+
+    /**
+     * @param at where affiliation splits into local part and domain, or -1
+     */
+    private int findPos(String affiliation, int h, int at) {
+        int pos = spread(h) & mask;
+        byte tag = tag(h);
+        while (slots[pos] != 0 && !(tags[pos] == tag && matches(slots[pos] - 1, affiliation, at))) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    /**
+     * Compares an id's affiliation with a String without building either
+     * the affiliation or the String's bytes.
+     */
+    private boolean matches(int id, String affiliation, int at) {
+        if (!hasDomain(id)) {
+            return at < 0 && sameText(id, affiliation, 0, affiliation.length());
+        }
+        return at > 0 && sameText(id, affiliation, 0, at)
+                && domainPool.sameText(domains[id], affiliation, at + 1, affiliation.length());
+    }
+
+    /**
+     * @return whether id's bytes are the UTF-8 encoding of s from index from
+     * up to to
+     */
+    private boolean sameText(int id, String s, int from, int to) {
+        int start = starts[id], end = starts[id + 1];
+        if (end - start < to - from) {
+            return false; // UTF-8 takes at least a byte per char
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            int b = start + i - from; // every char so far was one byte
+            if (c >= 0x80) { // the rest may take several bytes each: compare them encoded
+                byte[] rest = s.substring(i, to).getBytes(StandardCharsets.UTF_8);
+                if (end - b != rest.length) {
+                    return false;
+                }
+                for (int j = 0; j < rest.length; j++) {
+                    if (text[b + j] != rest[j]) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (text[b] != c) {
+                return false;
+            }
+        }
+        return end - start == to - from;
+    }
+
+    private void growTable() {
+        slots = new int[slots.length * 2];
+        tags = new byte[slots.length];
+        mask = slots.length - 1;
+        for (int id = 0; id < size; id++) {
+            int h = get(id).hashCode();
+            int pos = spread(h) & mask;
+            while (slots[pos] != 0) {
+                pos = (pos + 1) & mask;
+            }
+            slots[pos] = id + 1;
+            tags[pos] = tag(h);
+        }
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+}
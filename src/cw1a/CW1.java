@@ -2,8 +2,6 @@ package cw1a;
 
 import java.util.*;
 import java.io.*;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import javax.swing.*;
 
 /**
@@ -18,6 +16,7 @@ public class CW1 {
     
     private static IContactDB db = new ContactsHashChained(); 
     // change to ContactsHashChained for later part of Coursework 1
+    // or to ContactsHashOpen for the flat-array open addressing table
     // change to ContactsBST for Coursework 2
 
     private static boolean acceptable(char ch) {
@@ -161,37 +160,39 @@ public class CW1 {
     }
     
     private static String startFolder = ".";
+    private static final long PARALLEL_LOAD_BYTES = 64L * 1024 * 1024; // files this big are parsed on every core
 
     private static void loadFile() {
-        String cvsSplitBy = ",";
         File file;
-        Scanner text;
+        long rows;
         int totalVisited;
-        Contact contact;
         db.resetTotalVisited();
         try {
             file = getDataFile(startFolder);
             if (file != null) {
-                FileInputStream streamIn = new FileInputStream(file);
-                text = new Scanner(streamIn);
-                while (text.hasNextLine()) {
-                    String line = text.nextLine();
-                    String[] parts = line.split(cvsSplitBy);
-                    String surname = parts[0].trim();
-                    String firstNames = parts[1].trim();
-                    String affiliation = parts[2].trim();
-                    contact = new Contact(surname + ", " + firstNames, affiliation);
-                    db.put(contact);
+                long start = System.nanoTime();
+                if (file.getName().endsWith(ContactSnapshot.EXTENSION)) {
+                    db = ContactSnapshot.load(file); // saved by ContactSnapshot.save: no parsing or hashing
+                    rows = db.size();
+                } else if (file.length() >= PARALLEL_LOAD_BYTES) {
+                    rows = new ParallelContactLoader().load(file, db);
+                } else {
+                    try (ContactFileReader reader = new ContactFileReader(file)) {
+                        rows = reader.loadInto(db);
+                    }
                 }
-                text.close();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("loaded %d rows in %.3f s (%.0f rows/sec)", rows, seconds,
+                  rows / seconds);
+                System.out.println();
                 totalVisited = db.getTotalVisited();
                 System.out.println("total number of  buckets visited = " + totalVisited);
                 System.out.printf("average number of  buckets visited =  %.2f", 
                   totalVisited /(double)db.getNumEntries());
         System.out.println();
             }
-        } catch (FileNotFoundException ex) {
-            System.out.println("Can't open chosen file " + fileName);
+        } catch (IOException ex) {
+            System.out.println("Can't read chosen file " + fileName + ": " + ex.getMessage());
         }
     }
 
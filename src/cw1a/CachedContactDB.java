@@ -0,0 +1,391 @@
+package cw1a;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-through cache in front of another IContactDB, for backends that
+ * are slow to read (on disk, or mapped from a snapshot) where a few names
+ * are looked up far more often than the rest. get and containsName answer
+ * from the cache when they can, and otherwise ask the backend once with get
+ * and keep the answer, including that a name is not held, so repeated
+ * misses are cheap too. put and remove go straight to the backend and drop
+ * or correct the name's cached answer, so the cache never disagrees with it.
+ *
+ * At most maximumSize names are kept, chosen by W-TinyLFU: a new name
+ * enters a small LRU window (1% of the cache); when it leaves the window it
+ * is admitted to the main cache only if it has been asked for more often
+ * recently than the name the main cache would evict for it. The main cache
+ * is a segmented LRU: a name asked for again while on probation is
+ * promoted to the protected segment (80% of the main cache). How often
+ * names are asked for is kept approximately, in a count-min sketch of 4-bit
+ * counters that are all halved every 10 * maximumSize accesses, so past
+ * popularity fades. A burst of names looked up once each, such as a scan,
+ * passes through the window without displacing the popular ones, which a
+ * plain LRU cache of the same size would lose.
+ *
+ * getHitCount and getMissCount count the lookups answered by the cache and
+ * by the backend; getTotalVisited is the backend's, so it counts only the
+ * work of misses. Like the tables it fronts, one thread at a time may use it.
+ */
+public class CachedContactDB implements IContactDB {
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2; // the queue each cached name is in
+
+    private final IContactDB backend;
+    private final int maximumSize;
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final Node[] queues = {new Node(null, null), new Node(null, null), new Node(null, null)}; // sentinels: next is the least recently used, prev the most
+    private final int[] queueSizes = new int[3];
+    private final FrequencySketch sketch;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * One cached answer, linked into the queue it is in.
+     */
+    private static final class Node {
+        final String name;
+        Contact contact; // the backend's contact for name, or null if it holds none
+        int queue;
+        Node prev = this, next = this; // a sentinel starts as an empty ring
+
+        Node(String name, Contact contact) {
+            this.name = name;
+            this.contact = contact;
+        }
+    }
+
+    /**
+     * @pre backend not null, maximumSize > 0
+     * @param backend the database to cache
+     * @param maximumSize the most names, held or not, to keep answers for
+     */
+    public CachedContactDB(IContactDB backend, int maximumSize) {
+        assert backend != null && maximumSize > 0;
+        this.backend = backend;
+        this.maximumSize = maximumSize;
+        this.windowMax = Math.max(1, maximumSize / 100);
+        this.mainMax = maximumSize - windowMax;
+        this.protectedMax = mainMax * 80 / 100;
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * @pre true
+     * @return the database behind the cache; changes made directly to it are
+     * not seen by the cache
+     */
+    public IContactDB getBackend() {
+        return backend;
+    }
+
+    /**
+     * @pre true
+     * @return the most names the cache keeps answers for
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @pre true
+     * @return the number of names the cache holds answers for now
+     */
+    public int getCachedCount() {
+        return nodes.size();
+    }
+
+    /**
+     * @pre true
+     * @return the get and containsName calls answered from the cache
+     */
+    public long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @pre true
+     * @return the get and containsName calls passed to the backend
+     */
+    public long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @pre true
+     * @return the answers dropped to make room for others
+     */
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @pre true
+     * @return hits as a fraction of lookups, or 0 if there have been none
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return backend.getNumEntries();
+    }
+
+    /**
+     * @return the backend's count of buckets visited, which only misses add to
+     */
+    @Override
+    public int getTotalVisited() {
+        return backend.getTotalVisited();
+    }
+
+    /**
+     * Resets the backend's count of buckets visited, and the hit, miss and
+     * eviction counts with it, so they all cover the same lookups.
+     */
+    @Override
+    public void resetTotalVisited() {
+        backend.resetTotalVisited();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Empties the backend and the cache.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        backend.clearDB();
+        nodes.clear();
+        for (int queue = 0; queue < queues.length; queue++) {
+            queues[queue].prev = queues[queue];
+            queues[queue].next = queues[queue];
+            queueSizes[queue] = 0;
+        }
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return lookUp(name) != null;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        assert name != null && !name.trim().equals("");
+        return lookUp(name);
+    }
+
+    @Override
+    public int size() {
+        return backend.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return backend.isEmpty();
+    }
+
+    /**
+     * Inserts a contact into the backend and drops any cached answer for its
+     * name, since the backend may store a different Contact object from the
+     * one given (e.g. with a pooled affiliation). The name's popularity is
+     * kept, so its next lookup is readmitted as readily.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        Contact previous = backend.put(contact);
+        Node node = nodes.remove(contact.getName());
+        if (node != null) {
+            unlink(node);
+        }
+        return previous;
+    }
+
+    /**
+     * Removes a contact from the backend; a cached answer for its name
+     * becomes "not held".
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact, or null if the name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        Contact removed = backend.remove(name);
+        Node node = nodes.get(name);
+        if (node != null) {
+            node.contact = null;
+        }
+        return removed;
+    }
+
+    @Override
+    public void displayDB() {
+        backend.displayDB();
+    }
+
+    /**
+     * @pre true
+     * @return the cache's counts and occupancy, for reports
+     */
+    @Override
+    public String toString() {
+        return String.format("%d/%d cached (window %d, probation %d, protected %d), %d hits, %d misses (%.2f%%), %d evictions",
+                nodes.size(), maximumSize, queueSizes[WINDOW], queueSizes[PROBATION], queueSizes[PROTECTED],
+                hits, misses, getHitRate() * 100, evictions);
+    }
+
+    private Contact lookUp(String name) {
+        sketch.increment(name.hashCode());
+        Node node = nodes.get(name);
+        if (node != null) {
+            hits++;
+            touched(node);
+            return node.contact;
+        }
+        misses++;
+        Contact contact = backend.get(name); // get rather than containsName, so the answer serves either next time
+        node = new Node(name, contact);
+        nodes.put(name, node);
+        linkLast(WINDOW, node);
+        if (queueSizes[WINDOW] > windowMax) {
+            admitFromWindow();
+        }
+        return contact;
+    }
+
+    /**
+     * Moves a node that has just been asked for: to the most recent end of
+     * its queue, or from probation into the protected segment, demoting the
+     * protected segment's least recent name if that makes it too big.
+     */
+    private void touched(Node node) {
+        unlink(node);
+        if (node.queue == PROBATION) {
+            linkLast(PROTECTED, node);
+            if (queueSizes[PROTECTED] > protectedMax) {
+                Node demoted = queues[PROTECTED].next;
+                unlink(demoted);
+                linkLast(PROBATION, demoted);
+            }
+        } else {
+            linkLast(node.queue, node);
+        }
+    }
+
+    /**
+     * Moves the window's least recent name to probation and, if the main
+     * cache is then over its size, evicts whichever of that name and the
+     * main cache's least recent one has been asked for less often.
+     */
+    private void admitFromWindow() {
+        Node candidate = queues[WINDOW].next;
+        unlink(candidate);
+        linkLast(PROBATION, candidate);
+        if (queueSizes[PROBATION] + queueSizes[PROTECTED] <= mainMax) {
+            return;
+        }
+        Node victim = queues[PROBATION].next;
+        if (victim == candidate && queueSizes[PROTECTED] > 0) { // nothing else on probation
+            victim = queues[PROTECTED].next;
+        }
+        Node evicted = victim != candidate
+                && sketch.frequency(candidate.name.hashCode()) > sketch.frequency(victim.name.hashCode())
+                ? victim : candidate; // ties go to the name already in the main cache
+        unlink(evicted);
+        nodes.remove(evicted.name);
+        evictions++;
+    }
+
+    private void linkLast(int queue, Node node) {
+        Node sentinel = queues[queue];
+        node.queue = queue;
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+        queueSizes[queue]++;
+    }
+
+    private void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        queueSizes[node.queue]--;
+    }
+
+    /**
+     * An approximate count of how often each name has been asked for: four
+     * rows of 4-bit counters, sixteen to a long, the count of a name being
+     * the least of its four. Every counter is halved once there have been
+     * 10 * the cache's size increments, so the counts follow recent demand.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L; // each counter's top three bits, after a shift right halves them
+
+        private final long[] table;
+        private final int sampleSize;
+        private int increments = 0;
+
+        FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(8, Math.min(maximumSize, 1 << 29)) * 2 - 1); // a power of two >= maximumSize
+            table = new long[length];
+            sampleSize = (int) Math.min(10L * maximumSize, Integer.MAX_VALUE);
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < SEEDS.length; row++) {
+                long h = (hash + SEEDS[row]) * SEEDS[row];
+                int index = (int) (h >>> 32) & (table.length - 1);
+                int shift = ((int) (h >>> 24) & 15) << 2; // which of the long's sixteen counters
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++increments == sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                increments /= 2;
+            }
+        }
+
+        int frequency(int hash) {
+            int frequency = 15;
+            for (int row = 0; row < SEEDS.length; row++) {
+                long h = (hash + SEEDS[row]) * SEEDS[row];
+                int index = (int) (h >>> 32) & (table.length - 1);
+                int shift = ((int) (h >>> 24) & 15) << 2;
+                frequency = Math.min(frequency, (int) ((table[index] >>> shift) & 15));
+            }
+            return frequency;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package cw1a;
+
+import java.io.PrintStream;
+
+/**
+ * Prints every probe trace event as it happens, in the same words the hash
+ * tables used to print unconditionally. Use it when debugging from CW1.
+ */
+public class ConsoleTableTrace implements ITableTrace {
+
+    private final PrintStream out;
+
+    /**
+     * Traces to System.out
+     */
+    public ConsoleTableTrace() {
+        this(System.out);
+    }
+
+    /**
+     * @pre out not null
+     * @param out the stream to trace to
+     */
+    public ConsoleTableTrace(PrintStream out) {
+        assert out != null;
+        this.out = out;
+    }
+
+    @Override
+    public void hashed(String name, int hash) {
+        out.println("Hashing string: '" + name + "'");
+    }
+
+    @Override
+    public void searchStarted(String name, int pos) {
+        out.println("\nStarting search for: " + name);
+        out.println("Initial hash position: " + pos);
+    }
+
+    @Override
+    public void visited(Contact contact) {
+        out.println("Visiting chain element: " + contact.getName());
+    }
+
+    @Override
+    public void found(Contact contact) {
+        out.println("Found " + contact.getName());
+    }
+
+    @Override
+    public void notFound(String name) {
+        out.println("Position is empty or name not found");
+    }
+
+    @Override
+    public void resized(int oldCapacity, int newCapacity) {
+        out.println("RESIZING");
+        out.println("resizing to " + newCapacity);
+    }
+}
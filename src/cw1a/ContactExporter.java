@@ -0,0 +1,172 @@
+package cw1a;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the contacts of a ContactsHashChained in alphabetical order, as
+ * CSV lines of surname,first names,affiliation, which ContactFileReader
+ * reads back to the same contacts. A contact it could not read back that
+ * way - a name with no ", " to split at, or a surname, first names or
+ * affiliation with spaces at either end, which the reader trims - is not
+ * written: the page holding it fails with an IOException instead, before
+ * any of the page is written.
+ *
+ * The database is read a page at a time and each page is formatted into
+ * one reused StringBuilder and written in a single call, so exporting tens
+ * of millions of contacts holds only one page in memory, and an export can
+ * be stopped and carried on later from the last page's resume token.
+ */
+public class ContactExporter {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    private final ContactsHashChained db;
+    private final int pageSize;
+    private final StringBuilder batch = new StringBuilder();
+    private long rowsWritten = 0;
+
+    /**
+     * @pre db not null
+     * @param db the database to export
+     */
+    public ContactExporter(ContactsHashChained db) {
+        this(db, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @pre db not null, pageSize > 0
+     * @param db the database to export
+     * @param pageSize the number of contacts read and written per batch
+     */
+    public ContactExporter(ContactsHashChained db, int pageSize) {
+        assert db != null && pageSize > 0;
+        this.db = db;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @pre true
+     * @return the number of contacts written so far
+     */
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * Writes one page of contacts.
+     * @pre out not null
+     * @param out where to write
+     * @param resumeToken null to start from the first contact, otherwise the
+     * token returned by the previous call
+     * @return the token for the next page, or null once every contact is written
+     * @throws IOException if writing fails, or a contact on the page would
+     * not read back unchanged
+     */
+    public String writePage(Writer out, String resumeToken) throws IOException {
+        assert out != null;
+        ContactPage page = db.page(resumeToken, pageSize);
+        batch.setLength(0);
+        for (Contact contact : page.getContacts()) {
+            appendCsv(batch, contact);
+        }
+        out.append(batch);
+        rowsWritten += page.getContacts().size();
+        return page.getResumeToken();
+    }
+
+    /**
+     * Writes every contact, page by page, and flushes.
+     * @pre out not null
+     * @param out where to write
+     * @return the number of contacts written
+     * @throws IOException if writing fails, or a contact would not read back
+     * unchanged
+     */
+    public long writeAll(Writer out) throws IOException {
+        long before = rowsWritten;
+        String token = writePage(out, null);
+        while (token != null) {
+            token = writePage(out, token);
+        }
+        out.flush();
+        return rowsWritten - before;
+    }
+
+    /**
+     * Writes every contact in UTF-8, page by page, and flushes. The stream
+     * is left open.
+     * @pre out not null
+     * @param out where to write
+     * @return the number of contacts written
+     * @throws IOException if writing fails, or a contact would not read back
+     * unchanged
+     */
+    public long writeAll(OutputStream out) throws IOException {
+        assert out != null;
+        return writeAll(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024));
+    }
+
+    /**
+     * Appends a contact as one CSV line. The name is split back into surname
+     * and first names at a ", ", the form ContactFileReader builds: the
+     * first one that leaves neither with spaces to trim, so that a quoted
+     * surname holding ", " with empty first names ("Smith, Jr", ) splits
+     * where the reader joined it.
+     * @throws IOException if the line would not read back as the same contact
+     */
+    static void appendCsv(StringBuilder line, Contact contact) throws IOException {
+        String name = contact.getName();
+        String affiliation = contact.getAffiliation();
+        int comma = name.indexOf(", ");
+        while (comma >= 0 && !(trimmed(name, 0, comma) && trimmed(name, comma + 2, name.length()))) {
+            comma = name.indexOf(", ", comma + 1);
+        }
+        if (comma < 0 || !trimmed(affiliation, 0, affiliation.length())) {
+            throw new IOException("cannot export " + contact + " as surname,first names,affiliation");
+        }
+        appendField(line, name.substring(0, comma));
+        line.append(',');
+        appendField(line, name.substring(comma + 2));
+        line.append(',');
+        appendField(line, affiliation);
+        line.append('\n');
+    }
+
+    /**
+     * @return whether s from index from up to to has nothing at either end
+     * that ContactFileReader trims from a field
+     */
+    private static boolean trimmed(String s, int from, int to) {
+        return from == to || (s.charAt(from) > ' ' && s.charAt(to - 1) > ' ');
+    }
+
+    /**
+     * Appends a field, in quotes with any quotes doubled if it holds a comma,
+     * quote or line break (RFC 4180).
+     */
+    private static void appendField(StringBuilder line, String field) {
+        boolean quote = false;
+        for (int i = 0; i < field.length() && !quote; i++) {
+            char ch = field.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            line.append(field);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < field.length(); i++) {
+            char ch = field.charAt(i);
+            if (ch == '"') {
+                line.append('"');
+            }
+            line.append(ch);
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,224 @@
+package cw1a;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads contacts from a CSV file of surname,first names,affiliation lines,
+ * the format of RandomNamesEmails.csv and the sampleMembers files.
+ *
+ * Fields are parsed as RFC 4180 describes: a field in double quotes may
+ * contain commas, line breaks and doubled quotes (""), so an affiliation
+ * such as "Elliott, John W Esq" is read whole. Surrounding spaces are
+ * trimmed from each field, and blank lines are skipped.
+ *
+ * The file is streamed through one fixed byte buffer and one char buffer,
+ * and fields are gathered in StringBuilders that are reused for every row,
+ * so the only allocation per row is the Contact and its two Strings.
+ */
+public class ContactFileReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FIELDS = 3; // surname, first names, affiliation
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean endOfInput = false;   // the channel has no more bytes
+    private final StringBuilder[] fields = new StringBuilder[FIELDS];
+    private final StringBuilder ignored = new StringBuilder(); // collects any fields after the third
+    private long lineNumber = 0;          // of the last row read, counting line breaks inside quotes
+    private long rowsRead = 0;
+
+    /**
+     * Opens a file for reading.
+     * @pre file not null
+     * @param file the CSV file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public ContactFileReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * Reads from an open channel, which close() will close.
+     * @pre channel not null and open
+     * @param channel the source of CSV bytes, in UTF-8
+     */
+    public ContactFileReader(ReadableByteChannel channel) {
+        assert channel != null;
+        this.channel = channel;
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i] = new StringBuilder();
+        }
+        chars.flip(); // starts empty, so the first read refills it
+    }
+
+    /**
+     * @pre true
+     * @return the number of contacts read so far
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Reads the next contact. Its name is "surname, first names", as CW1 has
+     * always built it.
+     * @pre true
+     * @return the next contact, or null at the end of the file
+     * @throws IOException if reading fails, or a row has fewer than three fields
+     */
+    public Contact readContact() throws IOException {
+        int fieldCount;
+        do {
+            lineNumber++;
+            fieldCount = readRecord();
+            if (fieldCount < 0) {
+                return null; // end of file
+            }
+        } while (fieldCount == 1 && trimmed(fields[0]).isEmpty()); // blank line
+        if (fieldCount < FIELDS) {
+            throw new IOException("line " + lineNumber + ": expected surname,first names,affiliation");
+        }
+        rowsRead++;
+        String surname = trimmed(fields[0]);
+        String firstNames = trimmed(fields[1]);
+        return new Contact(surname + ", " + firstNames, trimmed(fields[2]));
+    }
+
+    /**
+     * Reads every remaining contact into a database, as if by put.
+     * @pre db not null
+     * @param db the database to fill
+     * @return the number of contacts read
+     * @throws IOException if reading fails, or a row has fewer than three fields
+     */
+    public long loadInto(IContactDB db) throws IOException {
+        assert db != null;
+        long before = rowsRead;
+        Contact contact;
+        while ((contact = readContact()) != null) {
+            db.put(contact);
+        }
+        return rowsRead - before;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Parses one record into fields, up to and including its line break.
+     * @return the number of fields in the record, or -1 if the input was
+     * already exhausted
+     */
+    private int readRecord() throws IOException {
+        int ch = nextChar();
+        if (ch < 0) {
+            return -1;
+        }
+        for (int i = 0; i < FIELDS; i++) {
+            fields[i].setLength(0);
+        }
+        int fieldCount = 0;
+        while (true) {
+            StringBuilder field = fieldCount < FIELDS ? fields[fieldCount] : ignored;
+            field.setLength(0);
+            fieldCount++;
+            if (ch == '"') {
+                ch = readQuoted(field);
+            }
+            while (ch >= 0 && ch != ',' && ch != '\n' && ch != '\r') {
+                field.append((char) ch); // unquoted field, or anything between a closing quote and the delimiter
+                ch = nextChar();
+            }
+            if (ch == ',') {
+                ch = nextChar();
+                continue;
+            }
+            if (ch == '\r' && peekChar() == '\n') {
+                nextChar(); // CRLF is one line break
+            }
+            return fieldCount;
+        }
+    }
+
+    /**
+     * Reads the rest of a quoted field, after its opening quote.
+     * @return the character after the closing quote (-1 at end of input)
+     */
+    private int readQuoted(StringBuilder field) throws IOException {
+        while (true) {
+            int ch = nextChar();
+            if (ch < 0) {
+                return ch; // unterminated quote: keep what was read
+            }
+            if (ch == '"') {
+                ch = nextChar();
+                if (ch != '"') {
+                    return ch; // closing quote
+                }
+            } else if (ch == '\n') {
+                lineNumber++;
+            }
+            field.append((char) ch); // includes the one quote of a doubled ""
+        }
+    }
+
+    private int nextChar() throws IOException {
+        if (!chars.hasRemaining() && !refill()) {
+            return -1;
+        }
+        return chars.get();
+    }
+
+    private int peekChar() throws IOException {
+        if (!chars.hasRemaining() && !refill()) {
+            return -1;
+        }
+        return chars.get(chars.position());
+    }
+
+    /**
+     * Decodes more of the channel into the char buffer.
+     * @return false if there is nothing left to read
+     */
+    private boolean refill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0 && !endOfInput) {
+            if (channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput); // chars holds as many chars as bytes holds bytes, so this never leaves input behind at the end
+            bytes.compact(); // keeps a character split across reads for next time
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    private static String trimmed(StringBuilder field) {
+        int start = 0;
+        int end = field.length();
+        while (start < end && field.charAt(start) <= ' ') start++;
+        while (end > start && field.charAt(end - 1) <= ' ') end--;
+        return field.substring(start, end);
+    }
+}
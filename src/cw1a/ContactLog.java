@@ -0,0 +1,351 @@
+package cw1a;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of puts and removes, so a database can be rebuilt
+ * after a restart by replaying them.
+ *
+ * Appending only copies the record into a memory buffer. Every
+ * syncIntervalMillis a background thread writes everything appended since
+ * its last pass, if anything was, and forces it to disk with one fsync
+ * (group commit), so appending stays close to in-memory speed and a crash
+ * loses at most the last interval. An interval of 0 instead writes and
+ * forces every record before append returns.
+ *
+ * If writing or forcing fails, the file is cut back to where that write
+ * began and the records in it are dropped, so no torn record is left for
+ * the next ones to follow, and no record whose append failed replays. At
+ * interval 0 an append that throws has therefore left nothing in the log;
+ * a background sync's failure is kept and reported by every later append.
+ * If the file cannot be cut back either, every later append fails.
+ *
+ * Record layout, ints big-endian:
+ *   type ('P' put or 'R' remove), name length, name (UTF-8),
+ *   [affiliation length, affiliation (UTF-8), for a put]
+ *   CRC32 of everything before it in the record
+ * A crash can leave a partly written last record; replay stops at the
+ * first record that is incomplete or fails its checksum, and truncates
+ * the log there.
+ */
+public class ContactLog implements Closeable {
+
+    private static final byte PUT = 'P';
+    private static final byte REMOVE = 'R';
+    private static final int INITIAL_BUFFER = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long syncIntervalMillis;
+    private final ScheduledExecutorService syncer; // null when every append syncs
+    private final CRC32 crc = new CRC32();
+    private final Object syncLock = new Object(); // held while writing and forcing, so appends (which lock this) never wait for the disk
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER); // appended, not yet written; guarded by this
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER); // swapped with pending by sync; guarded by syncLock
+    private IOException failure = null; // from a background sync, or a sync that could not be rolled back; reported by every later append; guarded by this
+    private boolean unforced = false; // written to the channel but not yet forced; guarded by syncLock
+
+    /**
+     * Opens a log for appending, creating it if need be. Call replay first
+     * to read what it already holds.
+     * @pre file not null, syncIntervalMillis >= 0
+     * @param file the log file
+     * @param syncIntervalMillis how often appended records are forced to
+     * disk; 0 forces each one before append returns
+     * @throws IOException if the file cannot be opened
+     */
+    public ContactLog(File file, long syncIntervalMillis) throws IOException {
+        assert file != null && syncIntervalMillis >= 0;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.syncIntervalMillis = syncIntervalMillis;
+        if (syncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "contact-log-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::backgroundSync, syncIntervalMillis, syncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Records a put.
+     * @pre contact not null
+     * @param contact the contact put
+     * @throws IOException if an earlier sync failed, or (interval 0) this one does
+     */
+    public void appendPut(Contact contact) throws IOException {
+        append(PUT, contact.getName(), contact.getAffiliation());
+    }
+
+    /**
+     * Records a remove.
+     * @pre name not null
+     * @param name the name removed
+     * @throws IOException if an earlier sync failed, or (interval 0) this one does
+     */
+    public void appendRemove(String name) throws IOException {
+        append(REMOVE, name, null);
+    }
+
+    private void append(byte type, String name, String affiliation) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        byte[] affiliationBytes = affiliation == null ? null : affiliation.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + 4 + nameBytes.length + (affiliationBytes == null ? 0 : 4 + affiliationBytes.length) + 4;
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("contact log sync failed", failure);
+            }
+            if (pending.remaining() < length) {
+                pending = grow(pending, length);
+            }
+            int start = pending.position();
+            pending.put(type).putInt(nameBytes.length).put(nameBytes);
+            if (affiliationBytes != null) {
+                pending.putInt(affiliationBytes.length).put(affiliationBytes);
+            }
+            crc.reset();
+            crc.update(pending.array(), start, pending.position() - start);
+            pending.putInt((int) crc.getValue());
+        }
+        if (syncer == null) {
+            sync();
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        buffer.flip();
+        return bigger.put(buffer);
+    }
+
+    /**
+     * Writes every record appended so far and forces it to disk. Does
+     * nothing if there is nothing new to write or force, so an idle log
+     * costs the background thread no fsyncs.
+     * @pre true
+     * @throws IOException if writing or forcing fails; the records are then
+     * not in the log
+     */
+    public void sync() throws IOException {
+        synchronized (syncLock) {
+            ByteBuffer out;
+            synchronized (this) { // swap buffers, so appends carry on into the other while this one is written
+                if (pending.position() == 0 && !unforced) {
+                    return;
+                }
+                out = pending;
+                pending = writing;
+            }
+            writing = out;
+            out.flip();
+            long start = channel.position();
+            try {
+                unforced = true;
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                channel.force(false);
+                unforced = false;
+            } catch (IOException ex) {
+                rollBack(start, ex);
+                throw ex;
+            } finally {
+                out.clear();
+            }
+        }
+    }
+
+    /**
+     * Cuts the file back to where a failed write began, and forces that.
+     * If that fails too, the failure is kept, so every later append fails.
+     * @pre syncLock held
+     * @param start the file's size before the write
+     * @param cause why the write failed
+     */
+    private void rollBack(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+            channel.force(true);
+            unforced = false;
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+            synchronized (this) {
+                if (failure == null) {
+                    failure = cause;
+                }
+            }
+        }
+    }
+
+    private void backgroundSync() {
+        try {
+            sync();
+        } catch (IOException ex) {
+            synchronized (this) {
+                failure = ex;
+            }
+        }
+    }
+
+    /**
+     * Empties the log, e.g. once a snapshot holds everything it recorded.
+     * @pre true
+     * @throws IOException if the file cannot be truncated
+     */
+    public void truncate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                pending.clear();
+            }
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            unforced = false;
+        }
+    }
+
+    /**
+     * @pre true
+     * @return the bytes in the log file, not counting records not yet written
+     * @throws IOException if the size cannot be read
+     */
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * @pre true
+     * @return how often records are forced to disk, in ms; 0 for every record
+     */
+    public long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    /**
+     * Syncs everything appended, then closes the file.
+     * @throws IOException if the final sync fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Applies every complete record of a log file to a database, in order,
+     * and cuts off a torn last record. Replaying a log onto a database that
+     * already holds some or all of its changes is harmless, since each name
+     * ends up as its last record in the log leaves it.
+     * @pre file not null, db not null
+     * @param file the log file; missing means empty
+     * @param db the database to apply the records to
+     * @return the number of records applied
+     * @throws IOException if the file cannot be read
+     */
+    public static long replay(File file, IContactDB db) throws IOException {
+        assert file != null && db != null;
+        if (!file.exists()) {
+            return 0;
+        }
+        long records = 0;
+        long good = 0; // end of the last complete record
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER);
+            CRC32 check = new CRC32();
+            buffer.flip();
+            while (true) {
+                buffer = fill(in, buffer, 5);
+                if (buffer.remaining() < 5) {
+                    break;
+                }
+                int start = buffer.position();
+                byte type = buffer.get(start);
+                int nameLength = buffer.getInt(start + 1);
+                if ((type != PUT && type != REMOVE) || nameLength < 0 || nameLength > in.size()) {
+                    break;
+                }
+                int length = 5 + nameLength + 4;
+                if (type == PUT) {
+                    buffer = fill(in, buffer, 5 + nameLength + 4);
+                    start = buffer.position();
+                    int affiliationLength = buffer.remaining() < 5 + nameLength + 4 ? -1 : buffer.getInt(start + 5 + nameLength);
+                    if (affiliationLength < 0 || affiliationLength > in.size()) {
+                        break;
+                    }
+                    length += 4 + affiliationLength;
+                }
+                buffer = fill(in, buffer, length);
+                start = buffer.position();
+                if (buffer.remaining() < length) {
+                    break;
+                }
+                check.reset();
+                check.update(buffer.array(), buffer.arrayOffset() + start, length - 4);
+                if (buffer.getInt(start + length - 4) != (int) check.getValue()) {
+                    break;
+                }
+                String name = new String(buffer.array(), buffer.arrayOffset() + start + 5, nameLength, StandardCharsets.UTF_8);
+                if (type == PUT) {
+                    int affiliationAt = start + 5 + nameLength + 4;
+                    db.put(new Contact(name, new String(buffer.array(), buffer.arrayOffset() + affiliationAt,
+                            length - 4 - (affiliationAt - start), StandardCharsets.UTF_8)));
+                } else {
+                    db.remove(name);
+                }
+                buffer.position(start + length);
+                good += length;
+                records++;
+            }
+            if (good < in.size()) {
+                in.truncate(good); // a torn or corrupt tail, from a crash part way through writing
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads more of the channel until buffer has at least needed bytes
+     * remaining, or the channel is exhausted. Grows the buffer if needed.
+     * @return the buffer, positioned at the same record
+     */
+    private static ByteBuffer fill(FileChannel in, ByteBuffer buffer, int needed) throws IOException {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        buffer.compact();
+        if (buffer.capacity() < needed) {
+            buffer.flip();
+            buffer = ByteBuffer.allocate(needed).put(buffer);
+        }
+        while (buffer.position() < needed && in.read(buffer) > 0) {
+            // keep reading
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
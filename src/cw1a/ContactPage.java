@@ -0,0 +1,49 @@
+package cw1a;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of contacts in alphabetical order, as returned by
+ * ContactsHashChained.page, with the token that fetches the page after it.
+ *
+ * The resume token is the name of the last contact on the page, so the
+ * next page starts just after that name even if contacts were added or
+ * removed in between: nothing is skipped or repeated, and no cursor state
+ * is held by the database.
+ */
+public final class ContactPage {
+
+    private final List<Contact> contacts;
+    private final String resumeToken;
+
+    ContactPage(List<Contact> contacts, String resumeToken) {
+        this.contacts = Collections.unmodifiableList(contacts);
+        this.resumeToken = resumeToken;
+    }
+
+    /**
+     * @pre true
+     * @return the contacts of this page, in alphabetical order
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @pre true
+     * @return the token to pass to ContactsHashChained.page for the next
+     * page, or null if this is the last page
+     */
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    /**
+     * @pre true
+     * @return true iff no contacts follow this page
+     */
+    public boolean isLast() {
+        return resumeToken == null;
+    }
+}
@@ -0,0 +1,261 @@
+package cw1a;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a ContactsHashChained to a compact binary file and restores it,
+ * much faster than loading the original CSV: nothing is parsed, no name is
+ * hashed, the table is created at its final capacity so it never resizes,
+ * and the alphabetical index is rebuilt without comparing names.
+ *
+ * File layout, all ints big-endian:
+ *   header   MAGIC, VERSION, capacity, count, check hash
+ *   hashes   count ints: the table's hash of each name
+ *   strings  count records of name length, name, affiliation length,
+ *            affiliation; lengths are ints, strings are UTF-8
+ * Contacts are in alphabetical order of name. The check hash is the
+ * strategy's hash of CHECK_NAME; restoring with a strategy that hashes it
+ * differently, e.g. another seed, is refused, since the saved hashes would
+ * put names in the wrong buckets. So is a file whose names are not in
+ * strictly increasing order, which the table's alphabetical index and its
+ * unique keys depend on; that is checked as each name is read, since a
+ * damaged file would otherwise load without complaint.
+ *
+ * The file is read through memory-mapped windows, so restoring makes no
+ * read system calls and the hashes are copied out in bulk. A snapshot is
+ * written to a temporary file that then replaces the target, so a crash
+ * while saving leaves any previous snapshot intact; if saving fails, the
+ * temporary file is deleted.
+ */
+public class ContactSnapshot {
+
+    public static final String EXTENSION = ".cw1snap";
+
+    private static final int MAGIC = 0x43573153; // "CW1S"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 5 * 4;
+    private static final String CHECK_NAME = "Snapshot, Check";
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final long WINDOW = 1L << 28; // mapped at most 256MB at a time, so any size of file can be read
+
+    private ContactSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of a database.
+     * @pre db not null, file not null
+     * @param db the database to save
+     * @param file the snapshot file, replaced if it exists
+     * @return the number of contacts saved
+     * @throws IOException if the file cannot be written
+     */
+    public static long save(ContactsHashChained db, File file) throws IOException {
+        assert db != null && file != null;
+        IHashStrategy strategy = db.getHashStrategy();
+        File temp = new File(file.getPath() + ".tmp");
+        int count = db.size();
+        boolean moved = false;
+        try {
+            writeTo(temp, db, strategy, count);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            moved = true;
+        } finally {
+            if (!moved) {
+                temp.delete(); // best effort: an exception from here would hide the one that got us here
+            }
+        }
+        return count;
+    }
+
+    private static void writeTo(File temp, ContactsHashChained db, IHashStrategy strategy, int count) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(db.getCapacity()).putInt(count).putInt(strategy.hash(CHECK_NAME));
+
+            // hashes, then strings, each section in alphabetical order
+            ContactPage page = null;
+            do {
+                page = db.page(page == null ? null : page.getResumeToken(), 4096);
+                for (Contact contact : page.getContacts()) {
+                    ensureSpace(channel, buffer, 4);
+                    buffer.putInt(strategy.hash(contact.getName()));
+                }
+            } while (!page.isLast());
+            page = null;
+            do {
+                page = db.page(page == null ? null : page.getResumeToken(), 4096);
+                for (Contact contact : page.getContacts()) {
+                    putString(channel, buffer, contact.getName());
+                    putString(channel, buffer, contact.getAffiliation());
+                }
+            } while (!page.isLast());
+
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Restores a snapshot saved from a database hashing with SpreadHash, the
+     * default. Like a database made with the default constructor, the one
+     * restored switches to a seeded hash if names are built to collide.
+     * @pre file not null
+     * @param file the snapshot file
+     * @return a database holding the saved contacts at the saved capacity
+     * @throws IOException if the file cannot be read, is not a snapshot, or
+     * is corrupt
+     */
+    public static ContactsHashChained load(File file) throws IOException {
+        return load(file, new SpreadHash());
+    }
+
+    /**
+     * Restores a snapshot. With SpreadHash the database reseeds on a flood,
+     * as a default one does; with any other strategy it keeps that strategy.
+     * @pre file not null, strategy not null
+     * @param file the snapshot file
+     * @param strategy the hash strategy of the database that was saved
+     * @return a database holding the saved contacts at the saved capacity
+     * @throws IOException if the file cannot be read, is not a snapshot, is
+     * corrupt, or was saved with a strategy that hashes differently
+     */
+    public static ContactsHashChained load(File file, IHashStrategy strategy) throws IOException {
+        assert file != null && strategy != null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            Window in = new Window(channel);
+            in.ensure(HEADER_BYTES);
+            if (in.buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a contact snapshot");
+            }
+            int version = in.buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": unsupported snapshot version " + version);
+            }
+            int capacity = in.buffer.getInt();
+            int count = in.buffer.getInt();
+            if (in.buffer.getInt() != strategy.hash(CHECK_NAME)) {
+                throw new IOException(file + " was saved with a different hash strategy");
+            }
+            if (capacity <= 0 || count < 0) {
+                throw new IOException(file + " is corrupt");
+            }
+
+            int[] hashes = new int[count];
+            for (int i = 0; i < count; ) {
+                in.ensure(4);
+                int n = Math.min(in.buffer.remaining() / 4, count - i);
+                in.buffer.asIntBuffer().get(hashes, i, n); // as many as this window holds, in one copy
+                in.buffer.position(in.buffer.position() + 4 * n);
+                i += n;
+            }
+            ContactsHashChained db = new ContactsHashChained(strategy, strategy instanceof SpreadHash); //the default's defence against floods, as the default constructor gives it
+            db.restoreCapacity(capacity);
+            byte[] bytes = new byte[256];
+            String previous = null;
+            for (int i = 0; i < count; i++) {
+                String name = in.getString(bytes);
+                String affiliation = in.getString(bytes);
+                if (name.isEmpty() || previous != null && previous.compareTo(name) >= 0) { // restoreEntry relies on this
+                    throw new IOException(file + " is corrupt: contact " + i + " is out of order or repeated");
+                }
+                previous = name;
+                db.restoreEntry(hashes[i], new Contact(name, affiliation));
+            }
+            return db;
+        }
+    }
+
+    private static void putString(FileChannel channel, ByteBuffer buffer, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensureSpace(channel, buffer, 4);
+        buffer.putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) { // a string longer than the buffer goes out in pieces
+            ensureSpace(channel, buffer, 1);
+            int n = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, n);
+            offset += n;
+        }
+    }
+
+    private static void ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * A read-only mapping of part of the file, moved forward as it is read.
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final long size;
+        private long start = 0; // file position of buffer's position 0
+        MappedByteBuffer buffer;
+
+        Window(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            start = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position));
+        }
+
+        /**
+         * Makes at least bytes bytes readable from buffer.
+         * @throws IOException if the file ends first
+         */
+        void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                long position = start + buffer.position();
+                if (size - position < bytes) {
+                    throw new IOException("snapshot is truncated");
+                }
+                map(position);
+            }
+        }
+
+        /**
+         * @param bytes scratch space, used if big enough
+         * @return the next length-prefixed string
+         * @throws IOException if the file ends first, or the length is negative
+         */
+        String getString(byte[] bytes) throws IOException {
+            ensure(4);
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new IOException("snapshot is corrupt");
+            }
+            if (length > bytes.length) {
+                bytes = new byte[length];
+            }
+            int offset = 0;
+            while (offset < length) { // may span windows
+                ensure(1);
+                int n = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, n);
+                offset += n;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
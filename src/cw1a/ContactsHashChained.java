@@ -1,6 +1,12 @@
 package cw1a; //declares that this class belongs to that package. Packages are utilised in Java to organise related classes and ovoid naming conflicts.
 
-import java.util.LinkedList; //importing the LinkedList from javas standard utility package, which will be used for the chaining mechanism in the hash table.
+import java.util.ArrayList; //used to collect the contacts displaced by a bulk load
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap; //holds the nodes of a bucket whose chain has grown too long
+import java.util.concurrent.ThreadLocalRandom; //chooses the seed when the hash is changed under attack
 
 /**
  *
@@ -13,15 +19,39 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     private static final int[] PRIME_SIZES = { // An array of prime numbers used for table sizes. Using primes for HT sizes helps minimise collisions. 
         // static and final keywords mean this array is constant, i.e. doesn't change, and is shared across all instances of the class. 
         1009, 2003, 4001, 8009, 16001, 32003, 64007, 128021
-    };
-    private int primeIndex = 0; // keeps track of which prime in the array is currently being used as the table size. Initialised to the first index in the array, which is 0.
-    private LinkedList<Contact>[] table; //this is the core data structure: an array where each element is a LinkedList of Contact objects, which implements the chaining approach to collision resolution in HTs.
-                                         //when multiple keys hash to the same index, they're stored in a LinkedList at that location.
+    }; // beyond the last of these, the next size is computed as the first prime above twice the current size (see nextCapacity)
+    private static final int MAX_CAPACITY = 2147483629; // the largest prime an array can be sized to; the table stops growing here and chains just get longer
+    private static final int MIGRATE_BUCKETS_PER_STEP = 4; // how many old buckets each put/get moves across during an incremental resize.
+                                                            // A resize doubles the capacity, so the next one is about oldCapacity/2 puts away, and 4 buckets per step finishes the move in oldCapacity/4.
+    private static final int TREEIFY_THRESHOLD = 8; // a chain longer than this is turned into a tree. A good hash at any sensible load factor almost never makes one
+    private static final int UNTREEIFY_THRESHOLD = 6; // a tree this small goes back to being a chain. Below TREEIFY_THRESHOLD, so a bucket hovering around it does not convert back and forth
+    private static final int RESEED_THRESHOLD = 64; // a tree larger than this, and RESEED_FACTOR times the mean chain, means names are colliding by design, not chance: see reseed
+    private static final int RESEED_FACTOR = 8; // how many times the mean chain a tree must hold before it counts as a flood. A random hash almost never makes a chain twice the mean once the mean is more than a few, so only collisions pass this, however overloaded the table
+    private Node[] table; //this is the core data structure: an array where each element is the head Node of a chain of Contact objects, which implements the chaining approach to collision resolution in HTs.
+                          //when multiple keys hash to the same index, they're linked together from that location. A null head is an empty bucket.
     private int tableCapacity; //stores the current capacity of the HT.
+    private Node[] oldTable; //during an incremental resize, the previous table whose chains are still being moved into table; null when no resize is in progress.
+    private int migrateIndex; //the next bucket of oldTable to be moved. Buckets below it have already been moved, so their names now live in table.
+    private int migrateBucketsPerStep = MIGRATE_BUCKETS_PER_STEP; //see setMigrationStep
     private int numEntries; //tracks how many Contact objects are currently stored in the HT.
-    private int totalVisited = 0; //Keeps count of how many buckets/positions have been accessed during operations, for analysing the efficiency of the HT.
+    private long totalVisited = 0; //Keeps count of how many buckets/positions have been accessed during operations, for analysing the efficiency of the HT. A long, so large loads do not overflow it.
+    private final IHashStrategy baseStrategy; //the hash function the table was made with; see the constructors
+    private IHashStrategy hashStrategy; //the hash function used to place names in buckets now: baseStrategy, unless reseed has replaced it
+    private final boolean reseedOnFlood; //whether reseed may replace the hash: only for the default, whose String.hashCode can be made to collide at will
+    private int treeifyThreshold = TREEIFY_THRESHOLD; //see setTreeifyThreshold
+    private int chainWalked; //how many nodes the last findInChain walked: the whole chain when the name was not in it, so put knows its length without walking it again
+    private int usedBuckets; //how many buckets of table and oldTable hold a chain or tree, kept up to date as nodes are linked and unlinked, so the mean chain length is numEntries / usedBuckets without walking anything
+    private int longestChain; //the longest chain or tree table has held since it was made, raised as nodes are linked in; removals do not lower it, the next resize starts it again
+    private int oldLongestChain; //the same for oldTable, during an incremental resize
+    private ITableTrace trace = ITableTrace.NONE; //where the probe trace goes. The default ignores every event, so lookups do no string building or console I/O unless a trace is attached for debugging.
+    private final SortedContactIndex sortedIndex = new SortedContactIndex(); //every contact again, in alphabetical order, kept up to date by put and remove so displayDB and range queries never sort
+    private AffiliationIndex affiliationIndex = null; //every contact again, by affiliation and email domain, for reverse lookups. Built by the first one, then kept up to date by put and remove, so a table never asked for one pays nothing
+    private TableMetrics metrics = null; //per-operation counts, histograms and resize costs, or null (the default) when not collected; see enableMetrics
+    private NameFilter nameFilter = null; //a Bloom filter of the names held, through which containsName answers most misses without touching a bucket, or null (the default); see enableNameFilter
+    private AffiliationPool affiliationPool = null; //if set, contacts are stored holding only the pool's id of their affiliation; see setAffiliationPool
     
     // ####OPEN ADDRESSING ITERATION CODE TEMPORARILY KEPT COMMENTED OUT FOR REFERENCE####
+    // (the working version of this design - quadratic probing, DELETED markers and their reuse - is ContactsHashQuadratic)
     /**Declare a static final object acting as sentinel for marking deleted entries in the hash table
      * This allows for null slots (never used), regular Contact objects (i.e. placed in 'active' slots),
      * and deleted slots (populated by the 'DELETED' sentinel objects) to be distinguished. 
@@ -31,8 +61,9 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     //########################################################################################
     
     // Set the maximum load factor prior to resizing
-    private static final double maxLoadFactor = 50.0; //This defines when the table should be resized. LF is the ratio of entries to the table capacity, expressed as a percentage.
+    private double maxLoadFactor = 50.0; //This defines when the table should be resized. It can be tuned with setMaxLoadFactor. LF is the ratio of entries to the table capacity, expressed as a percentage.
                                                       //Here, when the table reaches 50% full, it will trigger resizing to maintain efficiency.
+    private double minLoadFactor = 0.0; //when removals take the LF below this percentage the table shrinks back down a size. 0 (the default) never shrinks; see setMinLoadFactor.
     
 //### OLD ITERATION CODE FOR REFERENCE WHILE REFACTORING ###        
     //public int getNumEntries(){return numEntries;}
@@ -40,19 +71,206 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     //public int getTotalVisited() {return totalVisited;}
 //#########################################################    
 
+    /**
+     * A single link in a bucket's chain. Chains are singly linked through
+     * these nodes rather than held in java.util.LinkedList, so walking a chain
+     * is a plain loop over next references: no indexed get(index) scans, no
+     * iterator allocation and no recursion, however long the chain grows.
+     */
+    private static class Node {
+        final int hash;  //the hash of the contact's name, computed once on insert. Resizes place nodes by it without hashing the name again, and searches compare it before comparing strings.
+        Contact contact; //the contact held in this link, replaced in place when its name is overwritten
+        Node next;       //the following link in the chain, or null at the end of the chain
+
+        Node(int hash, Contact contact, Node next) {
+            this.hash = hash;
+            this.contact = contact;
+            this.next = next;
+        }
+    }
+    
+    /**
+     * Stands in place of a bucket's chain once it grows longer than
+     * treeifyThreshold, holding the bucket's nodes in a red-black tree ordered
+     * by name, so that names which all land in one bucket, by chance or by
+     * design, take O(log n) comparisons to find rather than O(n). The nodes
+     * keep their hashes for resizing; their next links are not used.
+     */
+    private static final class TreeBin extends Node {
+        final TreeMap<String, Node> nodes = new TreeMap<>(); //the bucket's nodes, by name
+
+        TreeBin() {
+            super(0, null, null); //a bin holds no contact of its own
+        }
+    }
+
     
     /**
-     * Constructor - hash table with chaining
+     * Constructor - hash table with chaining, hashing names with SpreadHash.
+     * Names can be made to collide under SpreadHash at will, since it starts
+     * from String.hashCode, so if one bucket gathers far more names than the
+     * load explains this table switches to a hash seeded at random; see
+     * reseed.
      */ 
     public ContactsHashChained() { //this constructor initialises a new HT
+        this(new SpreadHash(), true); //String's own cached hashCode, well mixed, came out fastest with an even spread in HashDistributionReport
+    }
+    
+    /**
+     * Constructor - hash table with chaining, hashing names with the given
+     * strategy, always. Long chains are still turned into trees.
+     * @pre hashStrategy not null
+     * @param hashStrategy the hash function for names, e.g. LegacyHash to compare against the original
+     */ 
+    public ContactsHashChained(IHashStrategy hashStrategy) {
+        this(hashStrategy, false); //a strategy chosen by the caller is kept, whatever it does
+    }
+    
+    /**
+     * Constructor - hash table with chaining, hashing names with the given
+     * strategy, and replacing it as the default constructor's table does if
+     * reseedOnFlood. Used by ContactSnapshot, so a table restored from a
+     * snapshot of a default table still defends itself against a flood.
+     * @pre hashStrategy not null
+     * @param hashStrategy the hash function for names
+     * @param reseedOnFlood whether reseed may replace it
+     */
+    ContactsHashChained(IHashStrategy hashStrategy, boolean reseedOnFlood) {
+        assert hashStrategy != null;
         System.out.println("Hash Table with chaining"); //prints a message indicating the type of HT created in this iteration.
-        this.tableCapacity = PRIME_SIZES[primeIndex]; //sets the initial capacity to the first prime number in the PRIME_SIZES array.
-        table = new LinkedList[tableCapacity]; //creates a new array of LinkedList objects with that capacity. 
-        clearDB(); // calls the clearDB method to initialise each LinkedList in the array.
+        this.baseStrategy = hashStrategy;
+        this.reseedOnFlood = reseedOnFlood;
+        this.tableCapacity = PRIME_SIZES[0]; //sets the initial capacity to the first prime number in the PRIME_SIZES array.
+        clearDB(); // calls the clearDB method to create the (empty) array of chains.
     }
 
     // Accessors and Mutators (getters and setters)
     
+    /**
+     * setter for the growth threshold. Chaining tolerates load factors above
+     * 100%, trading longer chains for a smaller table. Takes effect from the
+     * next put.
+     * @pre maxLoadFactor > 0 and maxLoadFactor > 2 * minLoadFactor
+     * @param maxLoadFactor : the highest load factor, as a percentage, tolerated before growing
+     */
+    public void setMaxLoadFactor(double maxLoadFactor){
+        assert maxLoadFactor > 0.0 && maxLoadFactor > 2 * minLoadFactor;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+    
+    /**
+     * setter for the shrink policy. Once removals take the load factor below
+     * minLoadFactor, the table steps back down to the previous capacity (down
+     * PRIME_SIZES, never below its first entry), so an instance that churns
+     * through many contacts keeps a footprint in proportion to what it holds.
+     * @pre 0 <= minLoadFactor < maxLoadFactor / 2, so that halving the
+     * capacity can never immediately trigger growth again
+     * @param minLoadFactor : the lowest load factor, as a percentage, tolerated before shrinking; 0 disables shrinking
+     */
+    public void setMinLoadFactor(double minLoadFactor){
+        assert 0.0 <= minLoadFactor && minLoadFactor < maxLoadFactor / 2;
+        this.minLoadFactor = minLoadFactor;
+    }
+    
+    /**
+     * setter for the probe trace, e.g. a ConsoleTableTrace to watch lookups
+     * from CW1, or a RingBufferTableTrace to keep the latest events in memory.
+     * @pre trace not null (use ITableTrace.NONE to switch tracing off)
+     * @param trace : the trace to send hashing, search and resize events to
+     */
+    public void setTrace(ITableTrace trace){
+        assert trace != null;
+        this.trace = trace;
+    }
+    
+    /**
+     * setter for the affiliation pool. From the next put, each contact is
+     * stored as the pool's pooled copy, which holds its name and the int id
+     * of its affiliation in place of an affiliation String, so no contact
+     * keeps a String of its own for its affiliation, and comparing two stored
+     * affiliations for equality is an int compare of pool.idOf each. get then
+     * returns that stored Contact, equal in name and affiliation to the one
+     * put but not the same object, whose getAffiliation builds a new String
+     * from the pool each time. A pool that shares domains stores each
+     * @br00kes address as little more than its local part.
+     * @pre true
+     * @param pool : the pool to take affiliations from, or null to stop pooling
+     */
+    public void setAffiliationPool(AffiliationPool pool){
+        this.affiliationPool = pool;
+    }
+    
+    /**
+     * getter for the affiliation pool
+     * @return : the pool set by setAffiliationPool, or null
+     */
+    public AffiliationPool getAffiliationPool(){
+        return affiliationPool;
+    }
+    
+    /**
+     * Starts collecting TableMetrics: from now on each operation is timed and
+     * its probes counted, and each resize timed. Off by default, when the
+     * only cost is testing that metrics are off.
+     * @return the metrics, to read or to register with JMX; the same ones
+     * if they were already enabled
+     */
+    public TableMetrics enableMetrics(){
+        if (metrics == null){
+            metrics = new TableMetrics(this);
+        }
+        return metrics;
+    }
+    
+    /**
+     * Stops collecting metrics. Any already handed out keep their figures,
+     * and their gauges still read this table.
+     */
+    public void disableMetrics(){
+        metrics = null;
+    }
+    
+    /**
+     * getter for the metrics
+     * @return : the metrics being collected, or null if they are off
+     */
+    public TableMetrics getMetrics(){
+        return metrics;
+    }
+    
+    /**
+     * Starts keeping a NameFilter of the names held, built now from every
+     * contact in O(n). containsName then asks the filter first, and a name
+     * it rules out is reported missing without a bucket being read, which
+     * suits callers that mostly ask about names not held, e.g. checking for
+     * duplicates before a put. A name the filter lets through is looked up
+     * as before, so a hit costs one filter word more than without it; get,
+     * which is mostly asked for names that are held, does not use it.
+     * @return the filter, to read its counts; the same one if it was already kept
+     */
+    public NameFilter enableNameFilter(){
+        if (nameFilter == null){
+            nameFilter = new NameFilter(numEntries);
+            rebuildNameFilter();
+        }
+        return nameFilter;
+    }
+    
+    /**
+     * Stops keeping the name filter.
+     */
+    public void disableNameFilter(){
+        nameFilter = null;
+    }
+    
+    /**
+     * getter for the name filter
+     * @return : the filter being kept, or null if there is none
+     */
+    public NameFilter getNameFilter(){
+        return nameFilter;
+    }
+    
     /**
      * getter for the number of entries held within the database
      * @return : number of entries
@@ -68,7 +286,14 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
      */
     @Override //indicate this is an implementation of method declared in the IContactDB interface.
     public int getTotalVisited(){
-        return totalVisited; // returns the count of bucket accesses for performance analysis.
+        return (int) Math.min(totalVisited, Integer.MAX_VALUE); // returns the count of bucket accesses for performance analysis, held at Integer.MAX_VALUE rather than wrapping negative; the full count is in getMetrics().getTotalVisited().
+    }
+    
+    /**
+     * @return the number of buckets visited, without the int limit of getTotalVisited
+     */
+    long getTotalVisitedCount(){
+        return totalVisited;
     }
     
     /**
@@ -94,10 +319,14 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
      */
     @Override // indicate implementation of IContactDB defined method
     public void clearDB() { // Re-initialises the entire HT by...
-        table = new LinkedList[tableCapacity]; // Creating a new array of LinkedList objects with the current capacity
-        for (int i = 0; i < table.length; i++) { //(this for loop iterates through each position in the array and places a new, empty LL at that position. Without this, trying to access any LL in the table would yield a NullPointerException. 
-            table[i] = new LinkedList<>(); //Initialising each chain, i.e. each element in the array with an empty LinkedList
-        }
+        table = new Node[tableCapacity]; // Creating a new array of chain heads with the current capacity. Every head starts as null, i.e. an empty chain, so no per-bucket objects are allocated.
+        hashStrategy = baseStrategy; // going back to the original hash, if reseed replaced it, since nothing hashed with the replacement is left
+        oldTable = null; // abandoning any resize in progress, since there is nothing left to move
+        usedBuckets = 0; // no bucket holds anything now
+        longestChain = 0; // and no chain has any length
+        sortedIndex.clear(); // and emptying the alphabetical index with it
+        affiliationIndex = null; // and dropping the affiliation index until it is next wanted
+        if (nameFilter != null) nameFilter.clear(); // and emptying the name filter
         numEntries = 0; // Resetting the counter for the number of entries. This line resets the counter that tracks how many Contact objects are stored in the HT to zero, since effectively all entries have been removed by creating a fresh HT.
     }
             
@@ -122,24 +351,26 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     }
     
     /**
-     * Hash function for keys of type String.
+     * Hash function for keys of type String, delegating to the hash strategy.
+     * Called once per operation; the result is kept in the node on insert.
      * @param : s, i.e. the String key to hash 
-     * @return : the hash value of that string
+     * @return : the hash value of that string, before reduction to a bucket
      */
-
-    private int hash(String s) { //converts a string key (contact name) into an integer index for the HT.
+    private int hash(String s) {
         assert  s != null && !s.trim().equals(""); //Assertion to ensure the string is not null or empty. The trim method removes whitespace from both ends of the string.
-                                                   //This is defensive programming, preventing runtime errors like NullPointerException
-        System.out.println("Hashing string: '" + s + "'"); //prints the string being hashed for output analysis/debugging.
-        final int PRIME = 31; //defines the appropriately sized (small enough to minimise overflow risks, but large enough to provide good distribution) prime number constant used in the hash calculation. Used becauses primes help distribute has values more evenly. 
-        int hash = s.length() * s.charAt(0);//Intitial hash val calculation: combine the string length with the first character. Multiplication provides better distribution than addition. Front-loads the hash computation with distinguishing characteristics.
-        //implements polynomial hash function where each character contributes to the hash value, but the same characters in different positions affect the hash differently.
-        for (int i = 1; i < s.length(); i++){ //loop through from 2nd character - the first has already been incorporated during front-loading...This looping ensures anagrams produce different hash values
-            hash = (hash * PRIME + s.charAt(i)) % table.length; // the modulo at each step ensures the hash is kept within the HTs bounds, prevents int overflow furing calculation, and contributes to even distribution across the available range.
-        }
-        
-        return Math.abs(hash);   //return the hash as an absolute value, ensuring non-negative and therefore within valid index range of the HT array.
-        
+        int hash = hashStrategy.hash(s);
+        trace.hashed(s, hash); //report the string being hashed for output analysis/debugging.
+        return hash;
+    }
+    
+    /**
+     * Reduces a hash value to a bucket index.
+     * @param : hash, i.e. the value returned by hash()
+     * @param : capacity, i.e. the number of buckets of the table being indexed
+     * @return : the bucket index, in 0 .. capacity-1
+     */
+    private static int indexFor(int hash, int capacity) {
+        return (hash & 0x7fffffff) % capacity; //clearing the sign bit keeps it non-negative (Math.abs would leave Integer.MIN_VALUE negative); the prime capacity spreads it over every bucket
     }
 
     /**
@@ -150,7 +381,7 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
         return (double) numEntries / (double) table.length * 100.0; //type casting to double ensures accurate results by floating point division
     } 
     
-    // RECURSIVE IMPLEMENTATION OF containsName
+    // ITERATIVE IMPLEMENTATION OF containsName
     
     /**
      * Determines whether a contact's name exists as a key inside the database.
@@ -161,36 +392,83 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     @Override // Indicate implementation of interface defined method
     public boolean containsName(String name) {
         assert name != null && !name.equals(""); //ensures the name parameter is valid
-        int pos = hash(name); // Uses the hash function to find the index position for this name. 
-        LinkedList<Contact> chain = table[pos]; // retrieves the LinkedList at that position.
+        long start = metrics == null ? 0 : metrics.start(); //timed only when metrics are being collected, and then only a sample
+        long visited = totalVisited;
+        migrateStep(); // Does a share of any incremental resize in progress.
+        int hash = hash(name);
+        boolean found;
+        if (nameFilter != null && !nameFilter.mightContain(hash)){ // certainly not held: answered without reading a bucket
+            found = false;
+        } else {
+            found = find(name, hash) != null; // Walks the chain that the name would be held in.
+            if (!found && nameFilter != null) nameFilter.falsePositive();
+        }
+        if (metrics != null) metrics.record(TableMetrics.CONTAINS_NAME, start, totalVisited - visited);
+        return found;
+    }
+    
+    /**
+     * Finds the bucket a name belongs in. While an incremental resize is in
+     * progress a name lives in the old table if its old bucket has not been
+     * moved yet, and in the new table otherwise, so exactly one chain ever
+     * needs to be walked or added to.
+     * @param : hash, i.e: the hash of the name to be located
+     * @return the bucket index in table, or ~index (i.e. negative) for a bucket of oldTable.
+     */
+    private int locate(int hash){
+        if (oldTable != null){
+            int oldPos = indexFor(hash, oldTable.length);
+            if (oldPos >= migrateIndex){ //its old bucket is still waiting to be moved
+                return ~oldPos;
+            }
+        }
+        return indexFor(hash, table.length); // Reduces the hash to the index position for this name.
+    }
+    
+    /**
+     * Locates the node holding a name.
+     * @param : name, i.e: the name to be searched for
+     * @param : hash, i.e: the hash of name
+     * @return the node holding the name if found, otherwise null.
+     */
+    private Node find(String name, int hash){
+        int pos = locate(hash);
+        Node head = pos >= 0 ? table[pos] : oldTable[~pos];
+        trace.searchStarted(name, pos >= 0 ? pos : ~pos);
         totalVisited++; // Increments the counter for bucket accesses.
-        return containsNameInChain(chain, name,0); // Calls the recursive helper method containsNameInChain to search for the name in the chain.
+        return findInChain(head, name, hash);
     }
     
     /**
-     * Recursively check whether or not a name is present within a chain.
-     * @param : chain, i.e: the LinkedList to search
+     * Iteratively search a chain for the node holding a name.
+     * Uses constant stack space and allocates nothing, whatever the chain length.
+     * @param : head, i.e: the first node of the chain to search (null if the chain is empty)
      * @param : name, i.e: the name to be searched for
-     * @param : index, i.e: the present position within the chain
-     * @return true, if the name is found. 
+     * @param : hash, i.e: the hash of name
+     * @return the node holding the name if found, otherwise null.
      */
-    private boolean containsNameInChain(LinkedList<Contact> chain, String name, int index){ // recursive helper method for containsName. Searches for a name in a chain LinkedList. Linear search through the chain using recursion rather than a typical loop.
-        //for the base case the end of the list
-        if (chain == null || index >= chain.size()){ //base case: name NOT found, i.e. if the chain is null or end of list reached: return false 
-            return false;
+    private Node findInChain(Node head, String name, int hash){
+        if (head instanceof TreeBin){ //a chain grown too long, held as a tree
+            TreeBin bin = (TreeBin) head;
+            totalVisited += treeDepth(bin.nodes.size()); //count the comparisons a balanced tree of that size needs
+            Node node = bin.nodes.get(name);
+            if (node != null) trace.visited(node.contact);
+            return node;
         }
-        Contact contact = chain.get(index); //fetches the Contact object at the current position to be checked against the sought name
-        
-        
-        //for the base case that the contact is found
-        if (name.equals(contact.getName())){ // base case: name FOUND, i.e. if the current contacts name matches the search name: return true.
-            return true;
+        int walked = 0;
+        for (Node node = head; node != null; node = node.next){ //linear walk from the head to the end of the chain
+            walked++;
+            totalVisited++; //count each chain element compared
+            trace.visited(node.contact);
+            if (node.hash == hash && name.equals(node.contact.getName())){ //found: the current contacts name matches the search name. Comparing the cached hashes first skips most string comparisons
+                chainWalked = walked;
+                return node;
+            }
         }
-        
-        //the recursive case is to search the next chain element
-        return containsNameInChain(chain, name, index+1); // Recursive case: call the same method with the next index position, i.e. index +1 
+        chainWalked = walked; //the chain's length
+        return null; //end of chain reached without finding the name
     }
-    // RECURSIVE IMPLEMENTATION OF GET
+    // ITERATIVE IMPLEMENTATION OF GET
     
     /**
      * Returns a contact object mapped to the supplied name.
@@ -202,107 +480,429 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
     @Override //indicate implementation of interface defined method
     public Contact get(String name){
         assert name != null && !name.trim().equals(""); //ensures name param is valid
-        int pos = hash(name); //uses hash funct to find the index position for this name.
-        
-        System.out.println("\nStarting search for: " + name); //debug print stmnt
-        System.out.println("Initial hash position: " + pos); //debug print stmnt
-        
-        LinkedList<Contact> chain = table[pos]; //retrieves the LL at that position
-        totalVisited++; //count visiting the bucket
-        
-        //calling the rcursive helper method. i.e. delegating the actual search to getFromChain
-        return getFromChain(chain, name, 0);
+        long start = metrics == null ? 0 : metrics.start(); //timed only when metrics are being collected, and then only a sample
+        long visited = totalVisited;
+        migrateStep(); //does a share of any incremental resize in progress
+        Node node = find(name, hash(name)); //delegating the actual search to find
+        Contact contact = null;
+        if (node == null){
+            trace.notFound(name);
+        } else {
+            trace.found(node.contact);
+            contact = node.contact;
+        }
+        if (metrics != null) metrics.record(TableMetrics.GET, start, totalVisited - visited);
+        return contact;
     }
     
+    // BATCH LOOKUPS
+    
     /**
-     * Recursive implementation of search for a contact within a chain.
-     * @param : chain, i.e. the LinkedList to search
-     * @param : name, i,e. the name to be sought
-     * @param : index, i.e. the present position in the chain
-     * @return the contact if found, otherwise null.
+     * Looks up many names in one call, for jobs that resolve thousands at a
+     * time. The lookups are done in passes: every name is hashed, then every
+     * chain head is read from the table, then every chain is walked. The
+     * reads of each pass do not depend on one another, so the CPU overlaps
+     * their cache misses, where a loop of get calls takes them one lookup at
+     * a time. Results come back in input order.
+     * @pre names not null, each name not null and not empty string
+     * @param names the contact names (keys) to locate
+     * @return an array the length of names, holding the Contact mapped to
+     * each name, or null where the name does not exist
      */
-    private Contact getFromChain(LinkedList<Contact> chain, String name, int index){
-        //Base case : the end of the list
-        if (chain == null || index >= chain.size()){ //base case: NOT found, i.e. chain is null or end of list reached: return null
-            System.out.println("Position is empty or name not found");
-            return null;
+    public Contact[] getAll(String... names){
+        assert names != null;
+        Contact[] found = new Contact[names.length];
+        Node[] nodes = findAll(names);
+        for (int i = 0; i < names.length; i++){
+            found[i] = nodes[i] == null ? null : nodes[i].contact;
         }
-        
-        Contact contact = chain.get(index); //retrieves the current contact object from the LL for examination.
-        System.out.println("Visiting chain element: " + contact.getName());
-        totalVisited++; //increment counter to track each comparison within the chain
-        
-        //Base case : the sought contact has been found
-        if (name.equals(contact.getName())){ //base case: FOUND, i.e. the current contacts name matches the search name: return the contact
-            System.out.println("Found " + contact.getName());
-            return contact;
+        return found;
+    }
+    
+    /**
+     * Looks up many names in one call; see getAll(String...).
+     * @pre names not null, each name not null and not empty string
+     * @param names the contact names (keys) to locate
+     * @return a list the size of names, holding the Contact mapped to each
+     * name, or null where the name does not exist
+     */
+    public List<Contact> getAll(List<String> names){
+        return Arrays.asList(getAll(names.toArray(new String[0])));
+    }
+    
+    /**
+     * Tests many names in one call; see getAll(String...).
+     * @pre names not null, each name not null and not empty string
+     * @param names the contact names (keys) to locate
+     * @return an array the length of names, true where the name exists as a key
+     */
+    public boolean[] containsAll(String... names){
+        assert names != null;
+        boolean[] found = new boolean[names.length];
+        Node[] nodes = findAll(names);
+        for (int i = 0; i < names.length; i++){
+            found[i] = nodes[i] != null;
         }
-        
-        //The recursive case being to check the next element in the chain
-        return getFromChain(chain, name, index+1); //continue searching with the next index
-    } 
+        return found;
+    }
+    
+    /**
+     * Locates the node of every name, a pass at a time.
+     * @param : names, i.e: the names to be searched for
+     * @return the node holding each name, in input order, null where not found
+     */
+    private Node[] findAll(String[] names){
+        long start = metrics == null ? 0 : System.nanoTime();
+        long visited = totalVisited;
+        migrateStep(); //one share of any resize for the whole batch, so the buckets located in the first pass stay put
+        int n = names.length;
+        int[] hashes = new int[n];
+        int[] buckets = new int[n];
+        for (int i = 0; i < n; i++){ //first pass: hash everything, touching only the names
+            assert names[i] != null && !names[i].equals("");
+            hashes[i] = hash(names[i]);
+            buckets[i] = locate(hashes[i]);
+        }
+        Node[] heads = new Node[n];
+        for (int i = 0; i < n; i++){ //second pass: read every chain head, independent loads that can be in flight together
+            heads[i] = buckets[i] >= 0 ? table[buckets[i]] : oldTable[~buckets[i]];
+        }
+        Node[] nodes = new Node[n];
+        for (int i = 0; i < n; i++){ //third pass: walk each chain
+            int pos = buckets[i] >= 0 ? buckets[i] : ~buckets[i];
+            trace.searchStarted(names[i], pos);
+            totalVisited++; //count the bucket access, as find does
+            nodes[i] = findInChain(heads[i], names[i], hashes[i]);
+            if (nodes[i] == null){
+                trace.notFound(names[i]);
+            } else {
+                trace.found(nodes[i].contact);
+            }
+        }
+        if (metrics != null) metrics.record(TableMetrics.BATCH_LOOKUP, start, totalVisited - visited);
+        return nodes;
+    }
     
-    // RECURSIVE IMPLEMENTATION OF PUT
+    // ITERATIVE IMPLEMENTATION OF PUT
     
     /**
-     * A helper method for put using recursion that does not trigger table resizing.
+     * A helper method for put that does not trigger table resizing.
      * @param : contact, i.e. the Contact object to add
      * @return the previous Contact with the same name if it exists, otherwise null.
      */
     private Contact putWithoutResizing(Contact contact){
         String name = contact.getName(); // get contacts name
-        int pos = hash(name); // get the contacts name
-        LinkedList<Contact> chain = table[pos]; // compute that name's hash position
-        totalVisited++; // increment the bucket access counter
+        if (affiliationPool != null) contact = affiliationPool.pooled(contact); //store the affiliation's id, not its String
+        migrateStep(); // does a share of any incremental resize in progress
         
         //check if the contact exists in the chain and replace if so, otherwise add
         //that contact to the chain.
-        Contact previous = putInChain(chain, contact, 0); // calls the recursive helper method putInChain to add or replace the contact in the chain.
-        
-        //If the contact was newly added, rather than replaced, increment the counter.
-        if (previous==null){ //if no previous contact with the same name existed
-            numEntries++; //increment the entry counter
+        int hash = hash(name); // hashed once: used to locate the chain, to compare against nodes and kept in the new node
+        int pos = locate(hash);
+        Node[] chains = pos >= 0 ? table : oldTable; //a name whose old bucket is not moved yet stays in the old table until it is
+        if (pos < 0) pos = ~pos;
+        trace.searchStarted(name, pos);
+        totalVisited++; // increment the bucket access counter
+        Node existing = findInChain(chains[pos], name, hash);
+        if (existing != null){ //a contact with a matching name has been found
+            Contact previous = existing.contact;
+            existing.contact = contact; //replace it in place and hand the old one back to the caller
+            sortedIndex.put(contact); //same name, so the same place in alphabetical order
+            if (affiliationIndex != null) affiliationIndex.replace(previous, contact); //but perhaps a different affiliation
+            return previous;
         }
         
-        return previous; //returns the previous contact with the same name, if any. 
+        addToBucket(chains, pos, new Node(hash, contact, null), chainWalked); //otherwise link a new node into the bucket, whose chain findInChain has just measured
+        sortedIndex.put(contact); //and into its place in alphabetical order - O(log n)
+        if (affiliationIndex != null) affiliationIndex.add(contact); //and under its affiliation and domain
+        numEntries++; //increment the entry counter
+        if (nameFilter != null){ //and into the name filter, rebuilt larger once it holds more names than it was sized for
+            nameFilter.add(hash);
+            if (nameFilter.needsRebuild(numEntries)) rebuildNameFilter();
+        }
+        if (reseedOnFlood && hashStrategy == baseStrategy && chains[pos] instanceof TreeBin
+                && isFlooded(((TreeBin) chains[pos]).nodes.size(), chains.length)){ //far more collisions than chance explains
+            reseed();
+        }
+        return null;
     }
     
     /**
-     * Traverse a chain recursively to add, or replace, a contact.
-     * @param : chain - the linkedList to be modified
-     * @param : contact - the contact to add or replace
-     * @param : index - the present position in the chain.
-     * return previous contact if they've been replaced, if added: null
+     * Removes and returns a contact from the database, with the key
+     * the supplied name. The node is unlinked from its chain, so the
+     * space is reclaimed and later searches of that chain are shorter.
+     * @param name The name (key) to remove.
+     * @pre name not null and name not empty string
+     * @return the removed Contact object mapped to the name, or null if
+     * the name does not exist.
      */
+    @Override //implemented method defined by interface
+    public Contact remove(String name){
+        assert name != null && !name.trim().equals(""); //ensures name param is valid
+        long start = metrics == null ? 0 : metrics.start(); //timed only when metrics are being collected, and then only a sample
+        long visited = totalVisited;
+        Contact removed = removeFromChain(name);
+        if (metrics != null) metrics.record(TableMetrics.REMOVE, start, totalVisited - visited);
+        return removed;
+    }
     
-    private Contact putInChain(LinkedList<Contact> chain, Contact contact, int index){ // Recursive helper method for Put
-        String name = contact.getName();
+    /**
+     * A helper method for remove that finds and unlinks the name's node.
+     * @param : name, i.e. the name (key) to remove
+     * @return the removed Contact object, or null if the name does not exist.
+     */
+    private Contact removeFromChain(String name){
+        migrateStep(); //does a share of any incremental resize in progress
+        int hash = hash(name);
+        int pos = locate(hash);
+        Node[] chains = pos >= 0 ? table : oldTable; //the chain the name would be held in, as in putWithoutResizing
+        if (pos < 0) pos = ~pos;
+        trace.searchStarted(name, pos);
+        totalVisited++; //count visiting the bucket
         
-        //Base case: end of the list. Add the new contact
-        if (index >= chain.size()){
-            chain.add(contact);
-            return null;
+        if (chains[pos] instanceof TreeBin){ //a tree: remove by name, and go back to a chain once it is small again
+            TreeBin bin = (TreeBin) chains[pos];
+            totalVisited += treeDepth(bin.nodes.size());
+            Node node = bin.nodes.remove(name);
+            if (node == null){
+                trace.notFound(name);
+                return null;
+            }
+            if (bin.nodes.size() <= UNTREEIFY_THRESHOLD){
+                chains[pos] = untreeify(bin);
+            }
+            return unlinked(node.contact);
         }
-        
-        Contact existing = chain.get(index); //retrieve contact at that index for examination
-        totalVisited++; //increment counter for each contact visited during the search
-        
-        //Base case: matching name has been found. Replace contact.
-        if (name.equals(existing.getName())){ //if a contact with a matching name has been found
-            return chain.set(index, contact); //replace it with the new contact and return the old one. The set method returns the element that was previously at that position. By returning this value directly, the method passes the old contact back to the caller.
+        Node previous = null; //the node before the current one, whose next link must skip a removed node
+        for (Node node = chains[pos]; node != null; previous = node, node = node.next){ //walk the chain keeping one node behind
+            totalVisited++; //count each chain element compared
+            trace.visited(node.contact);
+            if (node.hash == hash && name.equals(node.contact.getName())){ //found: unlink it
+                if (previous == null){
+                    chains[pos] = node.next; //it was the head, so the chain now starts from the next node
+                    if (node.next == null) usedBuckets--; //and it was the only node, so the bucket is empty now
+                } else {
+                    previous.next = node.next; //otherwise bridge over it
+                }
+                return unlinked(node.contact);
+            }
         }
-        
-        //Recursive case : proceed to check the next element in the chain
-        return putInChain(chain, contact, index+1); 
+        trace.notFound(name);
+        return null; //end of chain reached without finding the name
     }
     
-    @Override
-    public Contact remove(String name){ //not implemented properly as specified in CW task defenition, but overriden since it's a method defined by the IContactDB interface.
-        Contact contact = get(name);
-        
+    /**
+     * Completes the removal of a contact whose node has just been unlinked
+     * from its bucket.
+     * @param : contact, i.e. the contact removed
+     * @return contact
+     */
+    private Contact unlinked(Contact contact){
+        numEntries--; //decrement the entry counter
+        sortedIndex.remove(contact.getName()); //keep the alphabetical index in step
+        if (affiliationIndex != null) affiliationIndex.remove(contact); //and the affiliation index
+        if (nameFilter != null){ //the name's bits stay set in the filter, so rebuild it once there are too many such
+            nameFilter.removed();
+            if (nameFilter.needsRebuild(numEntries)) rebuildNameFilter();
+        }
+        trace.found(contact);
+        if (loadFactor() < minLoadFactor){ //too sparse: step the capacity back down
+            shrinkTable();
+        }
         return contact;
     }
     
+    // LONG CHAINS
+    
+    /**
+     * Links a node into a bucket, for a name known not to be there already.
+     * A chain that this makes longer than treeifyThreshold is turned into a
+     * tree; a tree just takes the node.
+     * @param : chains, i.e. the table the bucket belongs to (table or oldTable)
+     * @param : pos, i.e. the bucket index
+     * @param : node, i.e. the node to add, whose next link is overwritten
+     */
+    private void addToBucket(Node[] chains, int pos, Node node){
+        addToBucket(chains, pos, node, -1);
+    }
+    
+    /**
+     * As addToBucket, for a chain whose length the caller already knows, so
+     * it is not walked again to decide whether to treeify. Keeps usedBuckets
+     * and the longest chain of the table the bucket belongs to up to date.
+     * @param : chainLength, i.e. the number of nodes in the bucket's chain
+     * before node is added, or -1 if not known (it is then counted)
+     */
+    private void addToBucket(Node[] chains, int pos, Node node, int chainLength){
+        Node head = chains[pos];
+        int length; //of the bucket once node is in it
+        if (head instanceof TreeBin){
+            TreeBin bin = (TreeBin) head;
+            bin.nodes.put(node.contact.getName(), node);
+            length = bin.nodes.size();
+        } else {
+            node.next = head; //link in at the head of the chain - O(1), no walk to the tail needed
+            chains[pos] = node;
+            if (head == null){
+                usedBuckets++; //a bucket that was empty
+                length = 1;
+            } else {
+                length = chainLength >= 0 ? chainLength + 1 : lengthUpTo(node, treeifyThreshold + 1);
+                if (length > treeifyThreshold){
+                    TreeBin bin = treeify(node);
+                    chains[pos] = bin;
+                    length = bin.nodes.size(); //lengthUpTo may have stopped counting
+                }
+            }
+        }
+        if (chains == table){
+            if (length > longestChain) longestChain = length;
+        } else if (length > oldLongestChain){
+            oldLongestChain = length;
+        }
+    }
+    
+    /**
+     * @return the number of nodes in the chain from head, or limit if there
+     * are more, walking no more than limit of them
+     */
+    private static int lengthUpTo(Node head, int limit){
+        int length = 0;
+        for (Node node = head; node != null && length < limit; node = node.next){
+            length++;
+        }
+        return length;
+    }
+    
+    /**
+     * Moves the nodes of a chain into a tree.
+     * @param : head, i.e. the first node of the chain
+     * @return the bin holding them
+     */
+    private static TreeBin treeify(Node head){
+        TreeBin bin = new TreeBin();
+        for (Node node = head; node != null; ){
+            Node next = node.next;
+            node.next = null;
+            bin.nodes.put(node.contact.getName(), node);
+            node = next;
+        }
+        return bin;
+    }
+    
+    /**
+     * Moves the nodes of a tree back into a chain.
+     * @param : bin, i.e. the tree
+     * @return the head of the chain
+     */
+    private static Node untreeify(TreeBin bin){
+        Node head = null;
+        for (Node node : bin.nodes.values()){
+            node.next = head;
+            head = node;
+        }
+        return head;
+    }
+    
+    /**
+     * @return the depth of a balanced binary tree of size nodes, i.e. the
+     * comparisons a search of it makes: floor(log2(size)) + 1
+     */
+    private static int treeDepth(int size){
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+    
+    /**
+     * Decides whether a tree is too big for chance to explain: bigger than
+     * RESEED_THRESHOLD, and RESEED_FACTOR times bigger than the mean chain
+     * of its table, numEntries / capacity plus one. A table merely loaded
+     * far past maxLoadFactor, e.g. by putAll with too small a hint or a high
+     * setMaxLoadFactor, has long chains everywhere, not one giant.
+     * @param treeSize the number of nodes in the tree
+     * @param capacity the capacity of the table holding it
+     */
+    private boolean isFlooded(int treeSize, int capacity){
+        return treeSize > RESEED_THRESHOLD && treeSize > RESEED_FACTOR * (1 + (long) numEntries / capacity);
+    }
+    
+    /**
+     * Replaces the default hash, once isFlooded finds a tree too big for
+     * chance, with Fnv1aHash under a seed chosen at random for this table,
+     * and re-hashes every contact into a table grown first, if it was
+     * loaded past maxLoadFactor, to the capacity that holds them. Names built
+     * to collide under String.hashCode, which SpreadHash only mixes, do not
+     * collide under a seed their builder cannot know, so lookups go back to
+     * O(1) where the tree alone would keep them O(log n). Fnv1aHash reads
+     * every character of the name each time rather than String's cached
+     * hashCode, so only a table under attack pays for it, and clearDB goes
+     * back to SpreadHash.
+     */
+    private void reseed(){
+        finishMigration(); //one table to re-hash
+        int capacity = capacityFor(numEntries);
+        if (capacity != tableCapacity){ //overloaded as well: grow as ensureCapacity would, so the new hash has room
+            startMigration(capacity);
+            finishMigration();
+        }
+        hashStrategy = new Fnv1aHash(ThreadLocalRandom.current().nextInt());
+        Node[] old = table;
+        table = new Node[tableCapacity];
+        usedBuckets = 0; //rehashInto counts the buckets and chains of the new table afresh
+        longestChain = 0;
+        for (Node head : old){
+            if (head instanceof TreeBin){
+                for (Node node : ((TreeBin) head).nodes.values()){
+                    rehashInto(node.contact);
+                }
+            } else {
+                for (Node node = head; node != null; node = node.next){
+                    rehashInto(node.contact);
+                }
+            }
+        }
+        if (nameFilter != null) rebuildNameFilter(); //its bits were set from the old hashes
+    }
+    
+    /**
+     * Empties the name filter, resized for the contacts held now, and adds
+     * every one of them again from the hashes kept in the nodes, so no name
+     * is hashed. O(n), but needed only after O(n) puts or removes.
+     */
+    private void rebuildNameFilter(){
+        nameFilter.rebuild(numEntries);
+        for (Node[] chains : new Node[][] {table, oldTable}){ //both tables, if a resize is in progress
+            if (chains == null) continue;
+            for (Node head : chains){
+                if (head instanceof TreeBin){
+                    for (Node node : ((TreeBin) head).nodes.values()){
+                        nameFilter.add(node.hash);
+                    }
+                } else {
+                    for (Node node = head; node != null; node = node.next){
+                        nameFilter.add(node.hash);
+                    }
+                }
+            }
+        }
+    }
+    
+    private void rehashInto(Contact contact){
+        int hash = hashStrategy.hash(contact.getName());
+        addToBucket(table, indexFor(hash, table.length), new Node(hash, contact, null)); //new nodes, since a node's hash is final
+    }
+    
+    /**
+     * Sets how long a chain may grow before it is turned into a tree. Used by
+     * ChainLengthBenchmark, which measures chain walking itself, to keep
+     * every chain a chain.
+     * @pre threshold > UNTREEIFY_THRESHOLD
+     * @param threshold the most nodes a chain may hold; Integer.MAX_VALUE never makes trees
+     */
+    void setTreeifyThreshold(int threshold){
+        assert threshold > UNTREEIFY_THRESHOLD;
+        treeifyThreshold = threshold;
+    }
+    
     /**
      * Inserts a Contact object into the database, with the key of the supplied
      * contact's name.
@@ -315,6 +915,8 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
         assert contact != null; //validate contact not null
         String name = contact.getName(); //obtain the existing contacts name
         assert name != null && !name.trim().equals(""); // validate the name is not null or empty
+        long start = metrics == null ? 0 : metrics.start(); //timed only when metrics are being collected, and then only a sample
+        long visited = totalVisited;
         
         Contact previous = putWithoutResizing(contact); //calls putWithoutResizing to add the contact to the appropriate chain
         
@@ -322,9 +924,92 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
             resizeTable();
         }
         
+        if (metrics != null) metrics.record(TableMetrics.PUT, start, totalVisited - visited);
         return previous; //returns the previous contact with the same name, if any.
     }
-    // displayDB IMPLEMENTATION WITH RECURSION
+    
+    // BULK LOAD
+    
+    /**
+     * Inserts every contact of a collection, sizing the table once for the
+     * whole collection first. See putAll(Iterable, int).
+     * @pre contacts not null, and every contact not null with a non-empty name
+     * @param contacts the contacts to add
+     * @return the previous Contacts displaced by overwriting, in the order they were displaced
+     */
+    public List<Contact> putAll(Collection<? extends Contact> contacts){
+        assert contacts != null;
+        return putAll(contacts, contacts.size());
+    }
+    
+    /**
+     * Inserts every contact supplied, e.g. from a file being read or a stream
+     * (pass stream::iterator). The table is grown once, straight to a capacity
+     * that holds expectedSize more entries within maxLoadFactor, and the
+     * contacts are then inserted without the per-put load factor check, so a
+     * large load does not step through every intermediate size and re-hash
+     * everything each time. A wrong hint is safe: once all are inserted, the
+     * table is grown again, in one step, to the capacity that holds them
+     * within maxLoadFactor.
+     * Each contact replaces any entry with the same name, as put does.
+     * @pre contacts not null, every contact not null with a non-empty name, expectedSize >= 0
+     * @param contacts the contacts to add
+     * @param expectedSize roughly how many contacts will be supplied
+     * @return the previous Contacts displaced by overwriting, in the order they
+     * were displaced; empty if every name was new
+     */
+    public List<Contact> putAll(Iterable<? extends Contact> contacts, int expectedSize){
+        assert contacts != null && expectedSize >= 0;
+        long start = metrics == null ? 0 : System.nanoTime();
+        long visited = totalVisited;
+        ensureCapacity((long) numEntries + expectedSize); //size once, up front
+        List<Contact> displaced = new ArrayList<>();
+        for (Contact contact : contacts){
+            assert contact != null && contact.getName() != null && !contact.getName().trim().equals("");
+            Contact previous = putWithoutResizing(contact); //no load factor check per entry
+            if (previous != null){
+                displaced.add(previous);
+            }
+        }
+        ensureCapacity(numEntries); //if the hint was too small, straight to the size that holds them all, not one step up
+        if (metrics != null) metrics.record(TableMetrics.PUT_ALL, start, totalVisited - visited);
+        return displaced;
+    }
+    
+    /**
+     * Grows the table, in one step, to the smallest capacity of the growth
+     * sequence that holds the given number of entries within maxLoadFactor.
+     * Does nothing if the table is already big enough.
+     * @pre expectedEntries >= 0
+     * @param expectedEntries the number of entries the table should hold without growing
+     */
+    public void ensureCapacity(long expectedEntries){
+        assert expectedEntries >= 0;
+        int capacity = capacityFor(expectedEntries);
+        if (capacity != tableCapacity){
+            finishMigration(); //a previous resize must be complete before another starts
+            startMigration(capacity);
+            finishMigration(); //move everything now: bulk loading is not latency sensitive, and the load that follows runs without migration steps
+        }
+    }
+    
+    /**
+     * @return the smallest capacity of the growth sequence, from the current
+     * one up, that holds entries within maxLoadFactor, or the largest possible
+     */
+    private int capacityFor(long entries){
+        int capacity = tableCapacity;
+        while (entries * 100.0 / capacity > maxLoadFactor){ //walk up the growth sequence until it fits
+            int next = nextCapacity(capacity);
+            if (next == capacity){ //the largest possible table
+                break;
+            }
+            capacity = next;
+        }
+        return capacity;
+    }
+    
+    // displayDB IMPLEMENTATION
     
     /**
      * Prints the names and affiliations of all the contacts in the database in
@@ -332,132 +1017,386 @@ public class ContactsHashChained implements IContactDB {  //declares a public cl
      * @pre true
      */
     @Override public void displayDB(){
+        finishMigration(); //displaying walks every chain anyway, so complete any resize in progress first
         System.out.println("capacity " + table.length + " size " + numEntries + " Load factor " + loadFactor() + "%");
         
         // Show hash table structure 
         for (int i = 0; i < table.length; i++) { //loop to iterate through every index (i) position, i.e. bucket, in the HT.
-            LinkedList<Contact> chain = table[i]; //Retrieves the LL, the chain, at the current bucket position (i). This LL may contain multiple contacts if collisions occured at this has position.
-            if (chain != null && !chain.isEmpty()){ //checks the chain exists and contains at least one contact. Only non-empty chains will be displayed, to keep output ordered and interpretable.
+            Node chain = table[i]; //Retrieves the head of the chain at the current bucket position (i). This chain may contain multiple contacts if collisions occured at this has position.
+            if (chain != null){ //checks the chain contains at least one contact. Only non-empty chains will be displayed, to keep output ordered and interpretable.
                 System.out.print(i + ": "); // print the index: ...print used instead of println because the line will be continued with chain contents.
-                displayChain(chain, 0); //calls the recursive helper method displayChain to display all contacts in this chain, starting at the first element in the chain.
+                displayChain(chain); //calls the helper method displayChain to display all contacts in this chain, starting at the first element in the chain.
                 //this will print each contact followed by -> and ending in null to show the structure of the LinkedList/chain.
             }
         }
         
         //Display contacts in alphabetical order
-        Contact[] toBeSortedTable = new Contact[numEntries]; //creates a new array of size exactly matching the number of entries/contacts, to hold all contacts
-        int index = 0; //initialise counter to hold to keep track of the current position in the sorting array.
-        
-        // Fill array with all contacts
-        for (int i=0; i < table.length; i++){ // starts another loop through all bucket positions in the HT. same range as the previous loop but for alphabetical purpose
-            LinkedList<Contact> chain = table[i]; //again, retrieves chain at current bucket position to collect contacts for sorting.
-            if (chain != null && !chain.isEmpty()){ //checks again if the chain exists and contains contacts, this time for sorting
-                fillSortArray(chain, toBeSortedTable, index); //Calls the helper method to copy all contacts from the current chain into the sorting array. Params: chain, the LL to copy from; toBeSortedTable, the destination array; index, the starting position in the destination array.
-                //Update index based on how many contacts were added
-                index +=chain.size(); //updates the index position by adding the number of contacts in the current chain, ensuring the next chains contacts will be placed after the current ones in the array. 
+        System.out.println("\nContacts in alphabetical order:");
+        int i = 0;
+        for (Contact contact : sortedIndex){ //a walk along the index: already in order, so nothing is copied or sorted
+            System.out.println(i++ + " " + contact.toString()); //creates a numbered list of contacts in alphabetical order.
+        }
+    }
+    
+    // ORDERED QUERIES
+    
+    /**
+     * Returns the contacts whose names lie in a range, in alphabetical order.
+     * @pre fromName not null, toName not null
+     * @param fromName the first name of the range, included
+     * @param toName the end of the range, excluded
+     * @return the contacts with fromName <= name < toName
+     */
+    public List<Contact> range(String fromName, String toName){
+        return sortedIndex.range(fromName, toName); //one search for fromName, then a walk along the index
+    }
+    
+    /**
+     * Returns the contacts whose names start with a prefix, in alphabetical
+     * order. Names are "surname, first names", so withPrefix("Mac") gives
+     * every surname beginning Mac.
+     * @pre prefix not null
+     * @param prefix the start of the names wanted
+     * @return the contacts whose names start with prefix
+     */
+    public List<Contact> withPrefix(String prefix){
+        return sortedIndex.withPrefix(prefix);
+    }
+    
+    /**
+     * Returns one page of contacts in alphabetical order, for listing or
+     * exporting a large database a bounded number of contacts at a time.
+     * Start with a null token and pass each page's resume token to fetch the
+     * next; puts and removes between pages are fine, since a page always
+     * starts just after the last name of the one before.
+     * @pre pageSize > 0
+     * @param resumeToken null for the first page, otherwise the resume token of the previous page
+     * @param pageSize the most contacts to return
+     * @return up to pageSize contacts following the token, and the token for the page after them
+     */
+    public ContactPage page(String resumeToken, int pageSize){
+        assert pageSize > 0;
+        Iterator<Contact> contacts = resumeToken == null ? sortedIndex.iterator() : sortedIndex.iteratorAfter(resumeToken);
+        List<Contact> page = new ArrayList<>(Math.min(pageSize, numEntries));
+        while (page.size() < pageSize && contacts.hasNext()){
+            page.add(contacts.next());
+        }
+        String next = contacts.hasNext() ? page.get(page.size() - 1).getName() : null; //null: nothing follows, so this is the last page
+        return new ContactPage(page, next);
+    }
+    
+    // REVERSE LOOKUPS
+    
+    /**
+     * Returns every contact with an affiliation, in no particular order, in
+     * time proportional to the number found rather than to the size of the
+     * database, once the index is built: the first reverse lookup builds
+     * it, in O(n). Sort the result by name if order matters.
+     * @pre affiliation not null
+     * @param affiliation the affiliation wanted, matched exactly
+     * @return the contacts with that affiliation
+     */
+    public List<Contact> withAffiliation(String affiliation){
+        return affiliationIndex().withAffiliation(affiliation);
+    }
+    
+    /**
+     * Returns every contact whose affiliation is an email address at a
+     * domain, in no particular order; see withAffiliation.
+     * @pre domain not null
+     * @param domain the domain wanted, e.g. "br00kes" or "@br00kes", matched ignoring case
+     * @return the contacts with an address at that domain
+     */
+    public List<Contact> withDomain(String domain){
+        return affiliationIndex().withDomain(domain);
+    }
+    
+    /**
+     * Returns the affiliation index, building it from every contact the
+     * first time it is wanted. Building is O(n), once; from then on put and
+     * remove keep it up to date.
+     * @return the affiliation index
+     */
+    private AffiliationIndex affiliationIndex(){
+        if (affiliationIndex == null){
+            affiliationIndex = new AffiliationIndex();
+            for (Contact contact : sortedIndex){
+                affiliationIndex.add(contact);
             }
         }
-        
-        quicksort(toBeSortedTable, 0, numEntries -1);//Calls the QS algorithm to sort all contacts in the array by name. Params: the array to sort, the starting index of the array, and the ending index i.e. last element in the array
-        
-        System.out.println("\nContacts in alphabetical order:");
-        for (int i = 0; i < numEntries; i++){ // starts loop to iterate through each element in the sorted array.
-            System.out.println(i + " " + toBeSortedTable[i].toString()); //creates a numbered list of contacts in alphabetical order.
+        return affiliationIndex;
+    }
+    
+    /**
+     * Display all the contacts in a chain.
+     * @param chain the head node of the chain to display
+     */
+    private void displayChain(Node chain){ 
+        if (chain instanceof TreeBin){ //a tree: print its contacts in name order
+            for (Node node : ((TreeBin) chain).nodes.values()){
+                System.out.print(node.contact.toString() + " -> ");
+            }
+            System.out.println("(tree)");
+            return;
+        }
+        for (Node node = chain; node != null; node = node.next){ //print each element in turn
+            System.out.print(node.contact.toString() + " -> ");
         }
+        System.out.println("null"); //end of chain
+    }
+    
+    /**
+     * Starts growing the hash table when the load factor exceeds the maximum.
+     * Rather than re-hashing every entry in one pass, the current table is
+     * kept as oldTable and its chains are moved across a few buckets at a
+     * time by migrateStep, so no single put pays for the whole resize.
+     */
+    private void resizeTable(){
+        finishMigration(); //a previous resize must be complete before another starts
+        startMigration(nextCapacity(tableCapacity)); //the next size up for the new table. Already at the largest possible table, this changes nothing and chains simply grow
+    }
+    
+    /**
+     * Starts shrinking the hash table to the previous capacity, once the load
+     * factor has fallen below minLoadFactor. Moves entries incrementally
+     * exactly as growing does.
+     */
+    private void shrinkTable(){
+        finishMigration(); //a previous resize must be complete before another starts
+        startMigration(previousCapacity(tableCapacity)); //at the smallest capacity this changes nothing
     }
     
     /**
-     * Recursively display all the contacts in a chain.
-     * @param chain the LinkedList to display
-     * @param index present position in the chain.
+     * Makes a new, empty table of the given capacity and keeps the current one
+     * as oldTable, from which migrateStep moves the entries across.
+     * @pre no resize in progress, i.e. oldTable == null
+     * @param newCapacity the capacity of the new table
      */
-    private void displayChain(LinkedList<Contact> chain, int index){ 
-        //Base case: end of chain
-        if (index >= chain.size()){
-            System.out.println("null");
+    private void startMigration(int newCapacity){
+        assert oldTable == null;
+        if (newCapacity == tableCapacity){
             return;
         }
-        
-        //Print current element
-        System.out.print(chain.get(index).toString() + " -> ");
-        
-        //Recursive case: print the next element
-        displayChain(chain, index +1);
+        trace.resized(tableCapacity, newCapacity);
+        if (metrics != null) metrics.resizeStarted(tableCapacity, newCapacity);
+        oldTable = table; //keep the old table for incremental migration
+        oldLongestChain = longestChain; //its chains only get shorter from here, as they are moved out
+        longestChain = 0; //the new table starts empty
+        migrateIndex = 0;
+        tableCapacity = newCapacity;
+        table = new Node[tableCapacity]; //Create new table, i.e. array of empty chains, with the new capacity
     }
     
     /**
-     *Fill an array with contacts from a chain.
-     * @param chain the linked list from which to obtain the contacts
-     * @param array the array to be filled
-     * @param startIndex the starting position index of the array
- 
+     * Moves the next few buckets of the old table, if a resize is in progress.
      */
-    private void fillSortArray(LinkedList<Contact> chain, Contact[] array, int startIndex){ //iterative helper method for displayDB
-        for (int i=0; i < chain.size(); i++){ //standard loop to iterate through each element in the chain
-            array[startIndex + i] = chain.get(i); //copy each contact from the chain to the array. The position in the destination array is offeset by startIndex to account for contacts already added from previous chains
+    private void migrateStep(){
+        if (oldTable != null){
+            migrateBuckets(migrateBucketsPerStep);
         }
-        
     }
     
     /**
-     * Quicksort implementation for sorting contacts by name.
-     * @param a Array of contacts to sort
-     * @param low lower index
-     * @param high Upper index
+     * Moves every remaining bucket of the old table, if a resize is in progress.
      */
-    private void quicksort(Contact[] a, int low, int high){
-        assert a != null && 0 <= low && low <= high && high < a.length; //verify valid params
-        int i = low, j = high;
-        Contact temp;
-        if (high >= 0){
-            String pivot = a[(low + high) / 2].getName(); //selects a pivot element from the beginning of the array
-            while (i <= j){
-                while (a[i].getName().compareTo(pivot) < 0) i++; //inc i until element found that is greater than or equal to the pivot
-                while (a[j].getName().compareTo(pivot) > 0) j--; //dec j until element found that is less than or equal to the pivot
-                if (i <= j){ //if i and j have not crossed, swap the elements, placing smaller ones before larger ones 
-                    temp = a[i]; a[i] = a[j]; a[j] = temp;
-                    i++; j--;
+    private void finishMigration(){
+        if (oldTable != null){
+            migrateBuckets(oldTable.length - migrateIndex);
+        }
+    }
+    
+    /**
+     * Re-hashes the entries of up to count old buckets into the new table.
+     * @param count the number of old buckets to move
+     */
+    private void migrateBuckets(int count){
+        long start = metrics == null ? 0 : System.nanoTime(); //timed only when metrics are being collected
+        int end = (int) Math.min((long) migrateIndex + count, oldTable.length);
+        for (; migrateIndex < end; migrateIndex++){ //iterate through the next buckets in the old table
+            Node node = oldTable[migrateIndex];
+            oldTable[migrateIndex] = null; //the old bucket is empty once moved
+            if (node != null) usedBuckets--; //addToBucket counts the new buckets it fills
+            if (node instanceof TreeBin){ //a tree's nodes are moved one by one too, making a tree again wherever they still collide
+                for (Node moved : ((TreeBin) node).nodes.values()){
+                    addToBucket(table, indexFor(moved.hash, table.length), moved);
                 }
-            }   //recursive calls, dividing the array into smaller segments for sorting 
-                if (low < j) quicksort(a, low, j); //sorts the left segment, i.e. elements smaller than pivot
-                if (i < high) quicksort(a, i, high); //sorts the right segment, i.e. i.e. elements greater than the pivot
-            
+                continue;
+            }
+            while (node != null){ //for each node in the chain...
+                Node next = node.next; //remember the rest of the old chain before relinking
+                int pos = indexFor(node.hash, table.length); //find its bucket in the new table from the cached hash, without hashing the name again
+                addToBucket(table, pos, node); //and move the existing node into that bucket. Names are already unique, so no search is needed and no node is allocated.
+                node = next;
+            }
+        }
+        boolean finished = migrateIndex == oldTable.length;
+        if (finished){ //every bucket has been moved
+            oldTable = null; //so the old table can be garbage collected
         }
+        if (metrics != null) metrics.migrated(System.nanoTime() - start, finished);
     }
     
     /**
-     * Resizes the hash table when the load factor exceeds the maximum.
-     * This implementation does a complete re-hash of all elements, because their hash values - and, thus, their positions, will change with the new table size. 
+     * Counts the entries in every bucket, for reports on how evenly the hash
+     * strategy spreads names. Completes any resize in progress first.
+     * @return the chain length of each bucket of the table, indexed by bucket
      */
-    private void resizeTable(){
-        System.out.println("RESIZING");
-        LinkedList<Contact>[] oldTable = table; //store reference to the old table
-        int oldTableCapacity = tableCapacity; //and its capacity
-        primeIndex++; //inc to select... 
-        
-        tableCapacity = PRIME_SIZES[primeIndex]; //the next prime size for the new table size.
-        System.out.println("resizing to " + tableCapacity);
-        
-        //Create new table, i.e. array of LL objects, with increased capacity
-        table = new LinkedList[tableCapacity];
-        for (int i = 0; i < tableCapacity; i++){ //for each element in the new array...
-            table[i] = new LinkedList<>(); //initialise with an empty LL
+    int[] chainLengths(){
+        finishMigration();
+        int[] lengths = new int[table.length];
+        for (int i = 0; i < table.length; i++){
+            if (table[i] instanceof TreeBin){
+                lengths[i] = ((TreeBin) table[i]).nodes.size();
+                continue;
+            }
+            for (Node node = table[i]; node != null; node = node.next){
+                lengths[i]++;
+            }
         }
-        
-        int oldEntries = numEntries; //save the old entry count
-        numEntries = 0; //reset the current count to zero.
-        
-        //Re-hash all entries from old table
-        for (int i = 0; i < oldTableCapacity; i++){ //iterate through each bucket in the old table
-            LinkedList<Contact> chain = oldTable[i];
-            if (chain != null && !chain.isEmpty()){ //for each non-empty bucket, iterate through its chain.
-                for (Contact contact : chain) { //Add each contact to the new table... (this for each loop to iterate through all contacts in a chain)
-                    putWithoutResizing(contact); //by calling putWithoutResizing. 
-                }
+        return lengths;
+    }
+    
+    /**
+     * O(1), from figures kept as nodes are linked in, so it is cheap and safe
+     * for a metrics reader on another thread, which may see it a few
+     * operations out of date.
+     * @return the longest chain or tree held since the table was last
+     * resized, over the table and any old table; removals since may have
+     * shortened it
+     */
+    int getLongestChain(){
+        Node[] old = oldTable; //read once, since another thread may clear it
+        return old == null ? longestChain : Math.max(longestChain, oldLongestChain);
+    }
+    
+    /**
+     * O(1), like getLongestChain.
+     * @return the number of buckets, over the table and any old table, that
+     * hold at least one contact
+     */
+    int getUsedBucketCount(){
+        return usedBuckets;
+    }
+    
+    /**
+     * Sets how many old buckets each operation moves during a resize. Used by
+     * the benchmarks to compare against an all-at-once (stop-the-world) resize.
+     * @pre bucketsPerStep > 0
+     * @param bucketsPerStep buckets moved per put/get; Integer.MAX_VALUE moves them all at once
+     */
+    void setMigrationStep(int bucketsPerStep){
+        assert bucketsPerStep > 0;
+        migrateBucketsPerStep = bucketsPerStep;
+    }
+    
+    // SNAPSHOT SUPPORT, used by ContactSnapshot
+    
+    /**
+     * @return the hash strategy the table was made with, whose hashes a
+     * snapshot records: a restored table starts with it, and reseeds again
+     * if it has to
+     */
+    IHashStrategy getHashStrategy(){
+        return baseStrategy;
+    }
+    
+    /**
+     * @return whether reseed has replaced the hash the table was made with
+     */
+    boolean isReseeded(){
+        return hashStrategy != baseStrategy;
+    }
+    
+    /**
+     * @return the capacity of the table, or of the table being grown into during a resize
+     */
+    int getCapacity(){
+        return tableCapacity;
+    }
+    
+    /**
+     * Empties the database and gives it a table of the given capacity, ready
+     * for restoreEntry.
+     * @pre capacity > 0
+     * @param capacity the capacity the snapshot was saved at
+     */
+    void restoreCapacity(int capacity){
+        assert capacity > 0;
+        tableCapacity = capacity;
+        clearDB();
+    }
+    
+    /**
+     * Links in a contact read from a snapshot. The saved hash places it
+     * without hashing the name, and contacts arrive in alphabetical order,
+     * so it is appended to the sorted index without comparing names either.
+     * @pre restoreCapacity called, names unique and arriving in alphabetical
+     * order, and hash is this table's hash strategy's hash of the name
+     * @param hash the saved hash of the contact's name
+     * @param contact the contact
+     */
+    void restoreEntry(int hash, Contact contact){
+        if (affiliationPool != null) contact = affiliationPool.pooled(contact);
+        addToBucket(table, indexFor(hash, table.length), new Node(hash, contact, null)); //names are unique, so no search of the chain is needed
+        sortedIndex.append(contact);
+        if (affiliationIndex != null) affiliationIndex.add(contact);
+        if (nameFilter != null){
+            nameFilter.add(hash);
+            if (nameFilter.needsRebuild(numEntries)) rebuildNameFilter();
+        }
+        numEntries++;
+    }
+    
+    /**
+     * Chooses the capacity to grow to: the next of PRIME_SIZES while there is
+     * one, and after that the first prime above twice the current capacity,
+     * so the table can keep growing until arrays can get no larger.
+     * @param capacity the current capacity
+     * @return the capacity to grow to, or capacity itself if it is already MAX_CAPACITY
+     */
+    private static int nextCapacity(int capacity){
+        for (int prime : PRIME_SIZES){
+            if (prime > capacity){
+                return prime;
             }
         }
-        
-        assert numEntries == oldEntries : "Entry count changed during resize"; //Verify that the entry count after resizing matches the original count.
+        if ((long) capacity * 2 + 1 >= MAX_CAPACITY){
+            return MAX_CAPACITY;
+        }
+        int candidate = capacity * 2 + 1; //odd, so only odd candidates need testing
+        while (!isPrime(candidate)){
+            candidate += 2;
+        }
+        return candidate;
+    }
+    
+    /**
+     * Chooses the capacity to shrink to: the one nextCapacity would have grown
+     * from, so shrinking retraces the steps of growth. Beyond PRIME_SIZES
+     * those steps are recomputed, which is cheap next to the resize itself.
+     * @param capacity the current capacity
+     * @return the capacity below it, or capacity itself if it is already PRIME_SIZES[0]
+     */
+    private static int previousCapacity(int capacity){
+        int previous = PRIME_SIZES[0];
+        for (int next = nextCapacity(previous); next < capacity && next != previous; next = nextCapacity(next)){
+            previous = next;
+        }
+        return previous;
+    }
+    
+    /**
+     * Trial division primality test, only used once per resize.
+     * @param n an odd number greater than 2
+     * @return true iff n is prime
+     */
+    private static boolean isPrime(int n){
+        for (int d = 3; (long) d * d <= n; d += 2){
+            if (n % d == 0){
+                return false;
+            }
+        }
+        return true;
     }
 }        
         
@@ -0,0 +1,334 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hash table with chaining that one instance can safely share between
+ * threads, without a global lock.
+ *
+ * The table is split into SEGMENTS independent segments, each a small
+ * chained hash table guarded by its own lock, and a name's segment is chosen
+ * by the top bits of its hash. Writers (put, remove) lock only their
+ * segment, so writers to different segments never wait for each other, and
+ * a segment grows on its own while the others carry on.
+ *
+ * Readers (get, containsName) take no lock at all. Buckets are read with
+ * volatile semantics, a node's name and hash never change, and its contact
+ * and next link are volatile, so a reader always sees a consistent chain.
+ * A resize builds the larger bucket array from copies of the nodes and then
+ * publishes it, so readers still walking the old array are unaffected.
+ *
+ * size() and getTotalVisited() sum per-segment counts and a LongAdder, so
+ * they are exact when the table is quiet and a close snapshot while it is not.
+ */
+public class ContactsHashConcurrent implements IContactDB {
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;     // 64 stripes: plenty for 32 threads
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;     // power of two, so a bucket index is hash & (capacity - 1)
+    private static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 30;
+
+    private final IHashStrategy hashStrategy;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder totalVisited = new LongAdder();
+    private volatile double maxLoadFactor = 50.0; // percentage, as in ContactsHashChained
+
+    /**
+     * A link in a bucket's chain. The name and its hash are fixed; the
+     * contact (on overwrite) and next link (on removal) change under the
+     * segment lock and are volatile so lock-free readers see the change.
+     */
+    private static final class Node {
+        final int hash;
+        final String name;
+        volatile Contact contact;
+        volatile Node next;
+
+        Node(int hash, String name, Contact contact, Node next) {
+            this.hash = hash;
+            this.name = name;
+            this.contact = contact;
+            this.next = next;
+        }
+    }
+
+    /**
+     * One stripe of the table: its buckets, entry count and lock.
+     */
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        volatile AtomicReferenceArray<Node> buckets = new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+        volatile int count; // written only under the lock
+    }
+
+    /**
+     * Constructor - concurrent hash table, hashing names with SpreadHash
+     */
+    public ContactsHashConcurrent() {
+        this(new SpreadHash());
+    }
+
+    /**
+     * Constructor - concurrent hash table, hashing names with the given strategy
+     * @pre hashStrategy not null
+     * @param hashStrategy the hash function for names
+     */
+    public ContactsHashConcurrent(IHashStrategy hashStrategy) {
+        assert hashStrategy != null;
+        System.out.println("Concurrent hash table with lock-striped chaining");
+        this.hashStrategy = hashStrategy;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Sets the growth threshold of every segment. Takes effect from the next put.
+     * @pre maxLoadFactor > 0
+     * @param maxLoadFactor the highest load factor, as a percentage, tolerated before a segment grows
+     */
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        assert maxLoadFactor > 0.0;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return size();
+    }
+
+    @Override
+    public int getTotalVisited() {
+        return (int) Math.min(totalVisited.sum(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        totalVisited.reset();
+    }
+
+    /**
+     * Empties the database. Each segment is emptied under its own lock.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                segment.buckets = new AtomicReferenceArray<>(INITIAL_SEGMENT_CAPACITY);
+                segment.count = 0;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.count;
+        }
+        return (int) Math.min(sum, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Segment segment : segments) {
+            if (segment.count != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(String name) {
+        assert name != null && !name.trim().equals("");
+        return hashStrategy.hash(name);
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> (32 - SEGMENT_BITS)]; // top bits pick the segment, low bits the bucket
+    }
+
+    /**
+     * @pre name not null and not empty string
+     * @param name a contact name
+     * @return the index, from 0 to getSegmentCount() - 1, of the segment
+     * that holds name; puts of names in different segments never wait for
+     * each other
+     */
+    int segmentOf(String name) {
+        return hash(name) >>> (32 - SEGMENT_BITS);
+    }
+
+    /**
+     * @pre true
+     * @return the number of segments, each with its own lock
+     */
+    int getSegmentCount() {
+        return SEGMENTS;
+    }
+
+    /**
+     * Lock-free search of one chain.
+     * @return the node holding name, or null
+     */
+    private Node find(AtomicReferenceArray<Node> buckets, String name, int hash) {
+        long visited = 1; // the bucket itself
+        Node node = buckets.get(hash & (buckets.length() - 1));
+        while (node != null && !(node.hash == hash && name.equals(node.name))) {
+            visited++;
+            node = node.next;
+        }
+        totalVisited.add(node == null ? visited : visited + 1);
+        return node;
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * Takes no lock.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return get(name) != null;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name. Takes no lock.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        int hash = hash(name);
+        Node node = find(segmentFor(hash).buckets, name, hash);
+        return node == null ? null : node.contact;
+    }
+
+    /**
+     * Inserts a Contact object into the database, with the key of the supplied
+     * contact's name. Locks only the name's segment.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        int hash = hash(name);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node> buckets = segment.buckets;
+            Node existing = find(buckets, name, hash);
+            if (existing != null) {
+                Contact previous = existing.contact;
+                existing.contact = contact;
+                return previous;
+            }
+            int pos = hash & (buckets.length() - 1);
+            buckets.set(pos, new Node(hash, name, contact, buckets.get(pos))); // volatile write publishes the complete node
+            segment.count = segment.count + 1;
+            if (segment.count * 100.0 / buckets.length() > maxLoadFactor && buckets.length() < MAXIMUM_SEGMENT_CAPACITY) {
+                resize(segment);
+            }
+            return null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Removes and returns a contact from the database, with the key the
+     * supplied name. Locks only the name's segment.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact object mapped to the name, or null if the
+     * name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        int hash = hash(name);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            AtomicReferenceArray<Node> buckets = segment.buckets;
+            int pos = hash & (buckets.length() - 1);
+            Node previous = null;
+            for (Node node = buckets.get(pos); node != null; previous = node, node = node.next) {
+                totalVisited.increment();
+                if (node.hash == hash && name.equals(node.name)) {
+                    if (previous == null) {
+                        buckets.set(pos, node.next);
+                    } else {
+                        previous.next = node.next; // a reader already on node still finds its way on through node.next
+                    }
+                    segment.count = segment.count - 1;
+                    return node.contact;
+                }
+            }
+            return null;
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Doubles a segment's bucket array. Called with the segment locked.
+     * Nodes are copied rather than relinked so that readers still walking
+     * the old array see it unchanged; the new array is published only once
+     * it is complete.
+     */
+    private static void resize(Segment segment) {
+        AtomicReferenceArray<Node> oldBuckets = segment.buckets;
+        AtomicReferenceArray<Node> newBuckets = new AtomicReferenceArray<>(oldBuckets.length() * 2);
+        int mask = newBuckets.length() - 1;
+        for (int i = 0; i < oldBuckets.length(); i++) {
+            for (Node node = oldBuckets.get(i); node != null; node = node.next) {
+                int pos = node.hash & mask;
+                newBuckets.lazySet(pos, new Node(node.hash, node.name, node.contact, newBuckets.get(pos)));
+            }
+        }
+        segment.buckets = newBuckets; // volatile write publishes every bucket set above
+    }
+
+    /**
+     * Prints the names and affiliations of all the contacts in the database in
+     * alphabetic order. Reads each segment without locking, so contacts
+     * changed while it runs may or may not be included.
+     * @pre true
+     */
+    @Override
+    public void displayDB() {
+        List<Contact> contacts = new ArrayList<>();
+        long capacity = 0;
+        for (Segment segment : segments) {
+            AtomicReferenceArray<Node> buckets = segment.buckets;
+            capacity += buckets.length();
+            for (int i = 0; i < buckets.length(); i++) {
+                for (Node node = buckets.get(i); node != null; node = node.next) {
+                    contacts.add(node.contact);
+                }
+            }
+        }
+        System.out.println("capacity " + capacity + " size " + contacts.size() + " segments " + SEGMENTS);
+        contacts.sort((a, b) -> a.getName().compareTo(b.getName()));
+        System.out.println("\nContacts in alphabetical order:");
+        for (int i = 0; i < contacts.size(); i++) {
+            System.out.println(i + " " + contacts.get(i).toString());
+        }
+    }
+}
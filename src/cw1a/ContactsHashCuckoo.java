@@ -0,0 +1,482 @@
+package cw1a;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hash table with bucketised cuckoo hashing, for a bounded worst case: a
+ * name can only ever be in one of two buckets of SLOTS slots, or in a stash
+ * of at most STASH_SIZE, so get, containsName and remove look at no more
+ * than 2 * SLOTS + STASH_SIZE slots however the names collide.
+ *
+ * The two buckets are the two halves of one 64-bit hash of the name's
+ * characters (FNV-1a, then the MurmurHash3 finalizer), seeded at random per
+ * table. String.hashCode is deliberately not used, though it is cached:
+ * names can be built to collide under it at will, and names sharing a
+ * bucket lose the second choice that cuckoo hashing depends on.
+ *
+ * A put with both buckets full evicts a resident of one at random and
+ * moves it to its other bucket, repeatedly, for at most MAX_KICKS moves.
+ * The name left over when that runs out goes in the stash; only if the
+ * stash is full too is the table rebuilt: with twice the buckets or, if
+ * it is still lightly loaded, with a new seed. Inserts are therefore
+ * amortised O(1) with an occasional long one, while lookups stay bounded.
+ */
+public class ContactsHashCuckoo implements IContactDB {
+
+    private static final int SLOTS = 4;            // slots per bucket
+    private static final int STASH_SIZE = 4;
+    private static final int MAX_KICKS = 500;      // evictions tried before a name goes to the stash
+    private static final int INITIAL_BUCKETS = 256; // a power of two, so a bucket index is hash & mask
+    private static final int MAXIMUM_BUCKETS = 1 << 28; // SLOTS times this is still a valid array length
+    private static final double RESEED_LOAD = 50.0; // a failed insert below this load means an unlucky seed, not a full table
+
+    private long seed;
+    private double maxLoadFactor = 90.0;
+    private int[] firstHashes;  // each slot's first hash (also compared before names)
+    private int[] secondHashes; // each slot's second hash, so evicting never hashes a name again
+    private Contact[] slots;    // contact in each slot, null if empty; bucket b is slots b*SLOTS .. b*SLOTS+SLOTS-1
+    private int mask;           // buckets - 1
+    private final Contact[] stash = new Contact[STASH_SIZE];
+    private final int[] stashFirstHashes = new int[STASH_SIZE];
+    private final int[] stashSecondHashes = new int[STASH_SIZE];
+    private int stashCount = 0;
+    private int numEntries;
+    private long totalVisited = 0;
+    private long grows = 0;
+    private long reseeds = 0;
+    private long stashed = 0;
+    private Contact homeless; // set by place when it fails: the contact left without a slot
+    private int homelessFirst, homelessSecond; // and its hashes
+
+    /**
+     * Constructor - hash table with bucketised cuckoo hashing
+     */
+    public ContactsHashCuckoo() {
+        System.out.println("Hash Table with cuckoo hashing (" + SLOTS + "-slot buckets, stash of " + STASH_SIZE + ")");
+        seed = ThreadLocalRandom.current().nextLong();
+        allocate(INITIAL_BUCKETS);
+    }
+
+    /**
+     * Sets the growth threshold. Four-slot buckets fill to about 95% before
+     * inserts start to fail, but evictions get long well before that, so
+     * the default is 90%. Takes effect from the next put.
+     * @pre 0 < maxLoadFactor <= 95
+     * @param maxLoadFactor the highest load factor, as a percentage, tolerated before growing
+     */
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        assert 0.0 < maxLoadFactor && maxLoadFactor <= 95.0;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    /**
+     * @return the buckets and stash entries looked at by every operation
+     * since the last reset, held at Integer.MAX_VALUE rather than wrapping
+     */
+    @Override
+    public int getTotalVisited() {
+        return (int) Math.min(totalVisited, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        totalVisited = 0;
+    }
+
+    /**
+     * @pre true
+     * @return how many times the table has grown, chosen a new seed, and
+     * put a name in the stash
+     */
+    public long[] getRebuildCounts() {
+        return new long[] {grows, reseeds, stashed};
+    }
+
+    /**
+     * @pre true
+     * @return the number of contacts in the stash now
+     */
+    public int getStashCount() {
+        return stashCount;
+    }
+
+    /**
+     * Empties the database, keeping the current capacity.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        Arrays.fill(slots, null);
+        Arrays.fill(stash, null);
+        stashCount = 0;
+        numEntries = 0;
+    }
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numEntries == 0;
+    }
+
+    /**
+     * Calculates the value for the table's current load factor.
+     * @return the present load factor (expressed as a percentage)
+     */
+    private double loadFactor() {
+        return (double) numEntries / (double) slots.length * 100.0;
+    }
+
+    /**
+     * Hashes a name's characters with the table's seed.
+     * @param name the name to hash
+     * @return a 64-bit hash; the low half chooses the first bucket and the
+     * high half the second
+     */
+    private long hash(String name) {
+        long h = 0xcbf29ce484222325L ^ seed; // FNV-1a 64-bit offset basis, seeded
+        for (int i = 0; i < name.length(); i++) {
+            h = (h ^ name.charAt(i)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33; // MurmurHash3 fmix64, so both halves depend on every character
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Locates a name: its first bucket, then its second, then the stash.
+     * @param name the key to locate
+     * @param h the hash of name
+     * @return the slot holding name, ~(stash index) if it is in the stash, or
+     * Integer.MIN_VALUE if it is not held
+     */
+    private int find(String name, long h) {
+        int h1 = (int) h;
+        int slot = findInBucket(name, h1, (h1 & mask) * SLOTS);
+        if (slot >= 0) {
+            return slot;
+        }
+        slot = findInBucket(name, h1, ((int) (h >>> 32) & mask) * SLOTS);
+        if (slot >= 0) {
+            return slot;
+        }
+        for (int i = 0; i < stashCount; i++) {
+            totalVisited++;
+            if (stashFirstHashes[i] == h1 && name.equals(stash[i].getName())) {
+                return ~i;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    private int findInBucket(String name, int h1, int first) {
+        totalVisited++;
+        for (int slot = first; slot < first + SLOTS; slot++) {
+            Contact contact = slots[slot];
+            if (contact != null && firstHashes[slot] == h1 && name.equals(contact.getName())) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return find(name, hash(name)) != Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        assert name != null && !name.trim().equals("");
+        int slot = find(name, hash(name));
+        if (slot == Integer.MIN_VALUE) {
+            return null;
+        }
+        return slot >= 0 ? slots[slot] : stash[~slot];
+    }
+
+    /**
+     * Inserts a Contact object into the database, with the key of the supplied
+     * contact's name.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        assert name != null && !name.trim().equals("");
+        long h = hash(name);
+        int slot = find(name, h);
+        if (slot != Integer.MIN_VALUE) { // overwrite in place
+            Contact previous;
+            if (slot >= 0) {
+                previous = slots[slot];
+                slots[slot] = contact;
+            } else {
+                previous = stash[~slot];
+                stash[~slot] = contact;
+            }
+            return previous;
+        }
+        numEntries++;
+        if (loadFactor() > maxLoadFactor && slots.length / SLOTS < MAXIMUM_BUCKETS) {
+            rebuild(slots.length / SLOTS * 2, false);
+        }
+        insert(contact, (int) h, (int) (h >>> 32));
+        return null;
+    }
+
+    /**
+     * Places a contact known not to be held, stashing whatever is left
+     * without a slot, and rebuilding the table if even the stash is full.
+     */
+    private void insert(Contact contact, int h1, int h2) {
+        if (place(contact, h1, h2)) {
+            return;
+        }
+        if (stashCount < STASH_SIZE) {
+            stash(homeless, homelessFirst, homelessSecond);
+            return;
+        }
+        Contact left = homeless;
+        homeless = null;
+        boolean reseed = loadFactor() < RESEED_LOAD || slots.length / SLOTS == MAXIMUM_BUCKETS;
+        rebuild(reseed ? slots.length / SLOTS : slots.length / SLOTS * 2, reseed);
+        long h = hash(left.getName()); // the seed may have changed
+        insert(left, (int) h, (int) (h >>> 32)); // almost always finds room in the rebuilt table
+    }
+
+    /**
+     * Puts a contact in a free slot of either of its buckets or, failing
+     * that, evicts a resident at random and places that instead, for up to
+     * MAX_KICKS evictions.
+     * @return true if everything found a slot; otherwise false, with the
+     * contact left over in homeless
+     */
+    private boolean place(Contact contact, int h1, int h2) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int kick = 0; ; kick++) {
+            int b1 = (h1 & mask) * SLOTS;
+            int b2 = (h2 & mask) * SLOTS;
+            int free = freeSlot(b1);
+            if (free < 0) {
+                free = freeSlot(b2);
+            }
+            if (free >= 0) {
+                store(free, contact, h1, h2);
+                return true;
+            }
+            if (kick == MAX_KICKS) {
+                homeless = contact;
+                homelessFirst = h1;
+                homelessSecond = h2;
+                return false;
+            }
+            int victim = (random.nextBoolean() ? b1 : b2) + random.nextInt(SLOTS);
+            Contact evicted = slots[victim];
+            int e1 = firstHashes[victim];
+            int e2 = secondHashes[victim];
+            store(victim, contact, h1, h2);
+            contact = evicted; // carry on with the one thrown out: its other bucket may have room
+            h1 = e1;
+            h2 = e2;
+        }
+    }
+
+    private void stash(Contact contact, int h1, int h2) {
+        stash[stashCount] = contact;
+        stashFirstHashes[stashCount] = h1;
+        stashSecondHashes[stashCount] = h2;
+        stashCount++;
+        stashed++;
+    }
+
+    /**
+     * Re-places every contact in a table of the given number of buckets,
+     * with a new seed if asked. If that still leaves more contacts than the
+     * stash holds, tries again with a new seed, and then with twice the
+     * buckets, alternately.
+     * @param buckets the number of buckets, a power of two
+     * @param reseed whether to choose a new seed, and so new buckets for every name
+     */
+    private void rebuild(int buckets, boolean reseed) {
+        Contact[] oldSlots = slots;
+        int[] oldFirst = firstHashes;
+        int[] oldSecond = secondHashes;
+        Contact[] oldStash = Arrays.copyOf(stash, stashCount);
+        boolean rehash = false; // whether the saved hashes are out of date
+        for (int attempt = 0; ; attempt++) {
+            if (reseed) {
+                seed = ThreadLocalRandom.current().nextLong();
+                rehash = true;
+                reseeds++;
+            } else {
+                grows++;
+            }
+            allocate(buckets);
+            Arrays.fill(stash, null);
+            stashCount = 0;
+            boolean placed = true;
+            for (int i = 0; i < oldSlots.length && placed; i++) {
+                if (oldSlots[i] != null) {
+                    if (rehash) {
+                        long h = hash(oldSlots[i].getName());
+                        placed = refill(oldSlots[i], (int) h, (int) (h >>> 32));
+                    } else {
+                        placed = refill(oldSlots[i], oldFirst[i], oldSecond[i]);
+                    }
+                }
+            }
+            for (int i = 0; i < oldStash.length && placed; i++) {
+                long h = hash(oldStash[i].getName());
+                placed = refill(oldStash[i], (int) h, (int) (h >>> 32));
+            }
+            if (placed) {
+                return;
+            }
+            reseed = attempt % 2 == 0 || buckets == MAXIMUM_BUCKETS; // alternate: a new seed, then more room
+            if (!reseed) {
+                buckets *= 2;
+            }
+        }
+    }
+
+    /**
+     * Places one contact during a rebuild, stashing it if need be.
+     * @return false if there was no room even in the stash
+     */
+    private boolean refill(Contact contact, int h1, int h2) {
+        if (place(contact, h1, h2)) {
+            return true;
+        }
+        if (stashCount < STASH_SIZE) {
+            stash(homeless, homelessFirst, homelessSecond);
+            homeless = null;
+            return true;
+        }
+        return false;
+    }
+
+    private void store(int slot, Contact contact, int h1, int h2) {
+        slots[slot] = contact;
+        firstHashes[slot] = h1;
+        secondHashes[slot] = h2;
+    }
+
+    /**
+     * Removes and returns a contact from the database, with the key the
+     * supplied name. A slot freed in the main table may let a stashed
+     * contact move back in, so the stash is retried.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact object mapped to the name, or null if the
+     * name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        assert name != null && !name.trim().equals("");
+        int slot = find(name, hash(name));
+        if (slot == Integer.MIN_VALUE) {
+            return null;
+        }
+        Contact removed;
+        if (slot >= 0) {
+            removed = slots[slot];
+            slots[slot] = null;
+        } else {
+            removed = stash[~slot];
+            removeFromStash(~slot);
+        }
+        numEntries--;
+        for (int i = stashCount - 1; i >= 0; i--) { // a stashed contact whose bucket now has room goes back to it
+            int b1 = (stashFirstHashes[i] & mask) * SLOTS;
+            int b2 = (stashSecondHashes[i] & mask) * SLOTS;
+            int free = freeSlot(b1) >= 0 ? freeSlot(b1) : freeSlot(b2);
+            if (free >= 0) {
+                store(free, stash[i], stashFirstHashes[i], stashSecondHashes[i]);
+                removeFromStash(i);
+            }
+        }
+        return removed;
+    }
+
+    private int freeSlot(int first) {
+        for (int slot = first; slot < first + SLOTS; slot++) {
+            if (slots[slot] == null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void removeFromStash(int i) {
+        stashCount--;
+        stash[i] = stash[stashCount];
+        stashFirstHashes[i] = stashFirstHashes[stashCount];
+        stashSecondHashes[i] = stashSecondHashes[stashCount];
+        stash[stashCount] = null;
+    }
+
+    /**
+     * Prints the names and affiliations of all the contacts in the database in
+     * alphabetic order.
+     * @pre true
+     */
+    @Override
+    public void displayDB() {
+        System.out.println("capacity " + slots.length + " size " + numEntries + " stash " + stashCount
+                + " Load factor " + loadFactor() + "%");
+        Contact[] toBeSortedTable = new Contact[numEntries];
+        int j = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != null) {
+                System.out.println(i + ": " + slots[i].toString());
+                toBeSortedTable[j++] = slots[i];
+            }
+        }
+        for (int i = 0; i < stashCount; i++) {
+            System.out.println("stash " + i + ": " + stash[i].toString());
+            toBeSortedTable[j++] = stash[i];
+        }
+        Arrays.sort(toBeSortedTable, (a, b) -> a.getName().compareTo(b.getName()));
+        System.out.println("\nContacts in alphabetical order:");
+        for (int i = 0; i < numEntries; i++) {
+            System.out.println(i + " " + toBeSortedTable[i].toString());
+        }
+    }
+
+    private void allocate(int buckets) {
+        mask = buckets - 1;
+        slots = new Contact[buckets * SLOTS];
+        firstHashes = new int[buckets * SLOTS];
+        secondHashes = new int[buckets * SLOTS];
+    }
+}
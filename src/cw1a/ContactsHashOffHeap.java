@@ -0,0 +1,416 @@
+package cw1a;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash table that keeps its contacts outside the Java heap, so millions of
+ * them add almost nothing for the garbage collector to trace.
+ *
+ * Names and affiliations are encoded as UTF-8 records in direct
+ * ByteBuffers (segments of up to SEGMENT_SIZE bytes, appended to as
+ * contacts are put). The table itself is two primitive arrays, open
+ * addressed with linear probing as in ContactsHashOpen: the hash of each
+ * name, and where its record lies. However many contacts are held, the
+ * heap holds only these arrays and the segment list; a Contact is created
+ * only when get returns one.
+ *
+ * Overwriting or removing a contact leaves its old record behind as dead
+ * bytes. Once more than half of the bytes in the segments are dead, the
+ * live records are copied into fresh segments and the old ones released.
+ */
+public class ContactsHashOffHeap implements IContactDB {
+
+    private static final int INITIAL_CAPACITY = 1024;    // power of two, so a slot index is hash & mask
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+    private static final int FIRST_SEGMENT_SIZE = 1 << 20; // segments double from 1MB...
+    private static final int SEGMENT_SIZE = 64 << 20;      // ...up to 64MB of records per direct buffer
+    private static final long EMPTY = 0;                 // location of an empty slot; real locations are stored plus one
+
+    private final IHashStrategy hashStrategy;
+    private double maxLoadFactor = 50.0; // percentage, as in ContactsHashOpen
+
+    private int[] hashes;        // hash of the name in each slot
+    private long[] locations;    // segment << 32 | offset of each slot's record, plus one; EMPTY if none
+    private int mask;            // capacity - 1
+    private int numEntries;
+    private int totalVisited = 0;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private ByteBuffer current;  // the segment being appended to
+    private long usedBytes;      // in all segments, live or dead
+    private long deadBytes;      // of overwritten and removed records
+
+    /**
+     * Constructor - off-heap hash table, hashing names with SpreadHash
+     */
+    public ContactsHashOffHeap() {
+        this(new SpreadHash());
+    }
+
+    /**
+     * Constructor - off-heap hash table, hashing names with the given strategy
+     * @pre hashStrategy not null
+     * @param hashStrategy the hash function for names
+     */
+    public ContactsHashOffHeap(IHashStrategy hashStrategy) {
+        assert hashStrategy != null;
+        System.out.println("Hash Table with off-heap contact storage");
+        this.hashStrategy = hashStrategy;
+        allocate(INITIAL_CAPACITY);
+        clearSegments();
+    }
+
+    /**
+     * Sets the growth threshold. Takes effect from the next put.
+     * @pre 0 < maxLoadFactor < 100
+     * @param maxLoadFactor the highest load factor, as a percentage, tolerated before growing
+     */
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        assert 0.0 < maxLoadFactor && maxLoadFactor < 100.0;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    /**
+     * @pre true
+     * @return the bytes of direct memory held by the segments
+     */
+    public long getOffHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer segment : segments) {
+            bytes += segment.capacity();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    @Override
+    public int getTotalVisited() {
+        return totalVisited;
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        totalVisited = 0;
+    }
+
+    /**
+     * Empties the database, keeping the table's capacity but releasing every
+     * segment but one.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(locations, EMPTY);
+        numEntries = 0;
+        clearSegments();
+    }
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numEntries == 0;
+    }
+
+    private int hash(String name) {
+        assert name != null && !name.trim().equals("");
+        return hashStrategy.hash(name);
+    }
+
+    private double loadFactor() {
+        return (double) numEntries / (double) locations.length * 100.0;
+    }
+
+    /**
+     * Locates the slot holding a name, or the empty slot that ends its probe
+     * sequence.
+     * @param name the name, encoded as UTF-8
+     * @param h the hash of name
+     * @return the slot index where name is held, or where it may be inserted
+     */
+    private int findPos(byte[] name, int h) {
+        int pos = h & mask;
+        totalVisited++;
+        while (locations[pos] != EMPTY && !(hashes[pos] == h && nameEquals(locations[pos], name))) {
+            pos = (pos + 1) & mask;
+            totalVisited++;
+        }
+        return pos;
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return locations[findPos(encode(name), hash(name))] != EMPTY;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name, decoded from its
+     * off-heap record.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        long location = locations[findPos(encode(name), hash(name))];
+        return location == EMPTY ? null : decode(location, name);
+    }
+
+    /**
+     * Inserts a Contact object into the database, with the key of the supplied
+     * contact's name. The contact is copied off-heap; the object passed in is
+     * not kept.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        int h = hash(name);
+        byte[] nameBytes = encode(name);
+        int pos = findPos(nameBytes, h);
+        Contact previous = null;
+        if (locations[pos] != EMPTY) {
+            previous = decode(locations[pos], name);
+            deadBytes += recordLength(locations[pos]);
+        }
+        locations[pos] = append(nameBytes, encode(contact.getAffiliation()));
+        hashes[pos] = h;
+        if (previous == null) {
+            numEntries++;
+            if (loadFactor() > maxLoadFactor) {
+                resizeTable();
+            }
+        }
+        compactIfWasteful();
+        return previous;
+    }
+
+    /**
+     * Removes and returns a contact from the database, with the key the
+     * supplied name. Entries later in the same probe run are shifted back
+     * into the gap, as in ContactsHashOpen.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact object mapped to the name, or null if the
+     * name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        int gap = findPos(encode(name), hash(name));
+        if (locations[gap] == EMPTY) {
+            return null;
+        }
+        Contact removed = decode(locations[gap], name);
+        deadBytes += recordLength(locations[gap]);
+        int pos = (gap + 1) & mask;
+        while (locations[pos] != EMPTY) {
+            int home = hashes[pos] & mask;
+            if (((pos - home) & mask) >= ((pos - gap) & mask)) { // home not cyclically in (gap, pos], so it may fill the gap
+                hashes[gap] = hashes[pos];
+                locations[gap] = locations[pos];
+                gap = pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        hashes[gap] = 0;
+        locations[gap] = EMPTY;
+        numEntries--;
+        compactIfWasteful();
+        return removed;
+    }
+
+    /**
+     * Prints the names and affiliations of all the contacts in the database in
+     * alphabetic order. Every contact is decoded onto the heap to do so.
+     * @pre true
+     */
+    @Override
+    public void displayDB() {
+        System.out.println("capacity " + locations.length + " size " + numEntries + " Load factor " + loadFactor()
+                + "% off-heap " + getOffHeapBytes() + " bytes, " + deadBytes + " dead");
+        Contact[] sorted = new Contact[numEntries];
+        int j = 0;
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i] != EMPTY) {
+                sorted[j++] = decode(locations[i], null);
+            }
+        }
+        Arrays.sort(sorted, (a, b) -> a.getName().compareTo(b.getName()));
+        System.out.println("\nContacts in alphabetical order:");
+        for (int i = 0; i < numEntries; i++) {
+            System.out.println(i + " " + sorted[i].toString());
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        locations = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Doubles the table, placing every entry by its stored hash, so no record
+     * is read.
+     */
+    private void resizeTable() {
+        if (locations.length == MAXIMUM_CAPACITY) {
+            return;
+        }
+        int[] oldHashes = hashes;
+        long[] oldLocations = locations;
+        allocate(oldLocations.length * 2);
+        for (int i = 0; i < oldLocations.length; i++) {
+            if (oldLocations[i] != EMPTY) {
+                int pos = oldHashes[i] & mask;
+                while (locations[pos] != EMPTY) {
+                    pos = (pos + 1) & mask;
+                }
+                hashes[pos] = oldHashes[i];
+                locations[pos] = oldLocations[i];
+            }
+        }
+    }
+
+    // RECORDS: name length (int), name bytes, affiliation length (int), affiliation bytes
+
+    private static byte[] encode(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void clearSegments() {
+        segments.clear();
+        current = ByteBuffer.allocateDirect(FIRST_SEGMENT_SIZE);
+        segments.add(current);
+        usedBytes = 0;
+        deadBytes = 0;
+    }
+
+    /**
+     * Makes room for a record of length bytes, starting a new segment (twice
+     * the size of the last, up to SEGMENT_SIZE) if the current one is full.
+     */
+    private void ensureRoom(int length) {
+        if (current.remaining() < length) {
+            int size = (int) Math.min(SEGMENT_SIZE, 2L * current.capacity());
+            current = ByteBuffer.allocateDirect(Math.max(size, length));
+            segments.add(current);
+        }
+    }
+
+    /**
+     * Appends a record to the current segment, starting a new one if it
+     * does not fit.
+     * @return the record's location, plus one
+     */
+    private long append(byte[] name, byte[] affiliation) {
+        int length = 4 + name.length + 4 + affiliation.length;
+        ensureRoom(length);
+        long location = ((long) (segments.size() - 1) << 32 | current.position()) + 1;
+        current.putInt(name.length).put(name).putInt(affiliation.length).put(affiliation);
+        usedBytes += length;
+        return location;
+    }
+
+    private ByteBuffer segmentOf(long location) {
+        return segments.get((int) ((location - 1) >>> 32));
+    }
+
+    private static int offsetOf(long location) {
+        return (int) (location - 1);
+    }
+
+    private int recordLength(long location) {
+        ByteBuffer segment = segmentOf(location);
+        int offset = offsetOf(location);
+        int nameLength = segment.getInt(offset);
+        return 4 + nameLength + 4 + segment.getInt(offset + 4 + nameLength);
+    }
+
+    private boolean nameEquals(long location, byte[] name) {
+        ByteBuffer segment = segmentOf(location);
+        int offset = offsetOf(location);
+        if (segment.getInt(offset) != name.length) {
+            return false;
+        }
+        offset += 4;
+        for (int i = 0; i < name.length; i++) {
+            if (segment.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param name the record's name, if the caller already has it, else null
+     * @return a Contact holding the record at location
+     */
+    private Contact decode(long location, String name) {
+        ByteBuffer segment = segmentOf(location);
+        int offset = offsetOf(location);
+        int nameLength = segment.getInt(offset);
+        if (name == null) {
+            name = string(segment, offset + 4, nameLength);
+        }
+        int affiliationAt = offset + 4 + nameLength;
+        return new Contact(name, string(segment, affiliationAt + 4, segment.getInt(affiliationAt)));
+    }
+
+    private static String string(ByteBuffer segment, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = segment.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the live records into fresh segments once more than half of the
+     * bytes held are dead, so churn does not grow off-heap memory for ever.
+     */
+    private void compactIfWasteful() {
+        if (deadBytes * 2 <= usedBytes || usedBytes < SEGMENT_SIZE) {
+            return;
+        }
+        List<ByteBuffer> oldSegments = new ArrayList<>(segments);
+        clearSegments();
+        for (int i = 0; i < locations.length; i++) {
+            if (locations[i] != EMPTY) {
+                long location = locations[i];
+                ByteBuffer segment = oldSegments.get((int) ((location - 1) >>> 32));
+                int offset = offsetOf(location);
+                int nameLength = segment.getInt(offset);
+                int length = 4 + nameLength + 4 + segment.getInt(offset + 4 + nameLength);
+                ensureRoom(length);
+                locations[i] = ((long) (segments.size() - 1) << 32 | current.position()) + 1;
+                ByteBuffer record = segment.duplicate();
+                record.position(offset).limit(offset + length);
+                current.put(record);
+                usedBytes += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package cw1a;
+
+import java.util.Arrays;
+
+/**
+ * Hash table with open addressing held in flat parallel arrays.
+ * Each slot is described by a cached hash code, a key reference and a value
+ * reference, so a probe touches consecutive array elements rather than
+ * chasing LinkedList nodes. Collisions are resolved with linear probing and
+ * removal uses backward-shift deletion, so no DELETED markers are needed.
+ */
+public class ContactsHashOpen implements IContactDB {
+
+    private static final int INITIAL_CAPACITY = 1024; // power of two, so a slot index is hash & mask
+    private static final int MAXIMUM_CAPACITY = 1 << 30; // largest power of two an int[] can be sized to
+
+    // Set the maximum load factor prior to resizing, as a percentage (same convention as ContactsHashChained)
+    private double maxLoadFactor = 50.0;
+
+    private int[] hashes;      // cached (spread) hash code of the key in each slot
+    private String[] keys;     // key in each slot, null marks an empty slot
+    private Contact[] values;  // contact mapped to the key in each slot
+    private int mask;          // tableCapacity - 1
+    private int numEntries;
+    private int totalVisited = 0;
+
+    /**
+     * Constructor - hash table with open addressing (linear probing)
+     */
+    public ContactsHashOpen() {
+        System.out.println("Hash Table with open addressing (linear probing)");
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Sets the growth threshold. Linear probing degrades quickly beyond about
+     * 70%, so the default is kept at 50%. Takes effect from the next put.
+     * @pre 0 < maxLoadFactor < 100
+     * @param maxLoadFactor the highest load factor, as a percentage, tolerated before growing
+     */
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        assert 0.0 < maxLoadFactor && maxLoadFactor < 100.0;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    @Override
+    public int getTotalVisited() {
+        return totalVisited;
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        totalVisited = 0;
+    }
+
+    /**
+     * Empties the database, keeping the current capacity.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        numEntries = 0;
+    }
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numEntries == 0;
+    }
+
+    /**
+     * Hash function for keys of type String. Uses String's cached hashCode
+     * and spreads the high bits into the low bits, since only the low bits
+     * select the slot.
+     * @param s the String key to hash
+     * @return the spread hash value of that string
+     */
+    private static int hash(String s) {
+        assert s != null && !s.trim().equals("");
+        int h = s.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Calculates the value for the table's current load factor.
+     * @return the present load factor (expressed as a percentage)
+     */
+    private double loadFactor() {
+        return (double) numEntries / (double) keys.length * 100.0;
+    }
+
+    /**
+     * Locates the slot holding name, or the empty slot that ends its probe
+     * sequence.
+     * @param name the key to locate
+     * @param h the spread hash of name
+     * @return the slot index where name is held, or where it may be inserted
+     */
+    private int findPos(String name, int h) {
+        int pos = h & mask;
+        totalVisited++;
+        while (keys[pos] != null && !(hashes[pos] == h && name.equals(keys[pos]))) {
+            pos = (pos + 1) & mask; // linear probing, wrapping round the end of the table
+            totalVisited++;
+        }
+        return pos;
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return keys[findPos(name, hash(name))] != null;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        assert name != null && !name.trim().equals("");
+        return values[findPos(name, hash(name))];
+    }
+
+    /**
+     * Looks up many names in one call. All the names are hashed first, then
+     * the home slot of every name is read, then the probes are finished;
+     * the reads of each pass do not depend on one another, so the CPU
+     * overlaps their cache misses instead of taking them one lookup at a
+     * time. Results come back in input order.
+     * @pre names not null, each name not null and not empty string
+     * @param names the contact names (keys) to locate
+     * @return an array the length of names, holding the Contact mapped to
+     * each name, or null where the name does not exist
+     */
+    public Contact[] getAll(String... names) {
+        assert names != null;
+        int[] slots = findAll(names);
+        Contact[] found = new Contact[names.length];
+        for (int i = 0; i < names.length; i++) {
+            found[i] = values[slots[i]];
+        }
+        return found;
+    }
+
+    /**
+     * Tests many names in one call; see getAll.
+     * @pre names not null, each name not null and not empty string
+     * @param names the contact names (keys) to locate
+     * @return an array the length of names, true where the name exists as a key
+     */
+    public boolean[] containsAll(String... names) {
+        assert names != null;
+        int[] slots = findAll(names);
+        boolean[] found = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            found[i] = keys[slots[i]] != null;
+        }
+        return found;
+    }
+
+    /**
+     * @param names the names to locate
+     * @return findPos of each name, in input order
+     */
+    private int[] findAll(String[] names) {
+        int n = names.length;
+        int[] hashes = new int[n];
+        for (int i = 0; i < n; i++) {
+            hashes[i] = hash(names[i]);
+        }
+        String[] home = new String[n]; // the key in each name's home slot
+        for (int i = 0; i < n; i++) {
+            home[i] = keys[hashes[i] & mask];
+        }
+        int[] slots = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (home[i] == null) { // an empty home slot: absent, with no probe needed
+                slots[i] = hashes[i] & mask;
+                totalVisited++;
+            } else {
+                slots[i] = findPos(names[i], hashes[i]);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Inserts a Contact object into the database, with the key of the supplied
+     * contact's name.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        assert name != null && !name.trim().equals("");
+        Contact previous = putWithoutResizing(contact);
+        if (previous == null && loadFactor() > maxLoadFactor) {
+            resizeTable();
+        }
+        return previous;
+    }
+
+    private Contact putWithoutResizing(Contact contact) {
+        String name = contact.getName();
+        int h = hash(name);
+        int pos = findPos(name, h);
+        Contact previous = values[pos];
+        if (previous == null) { // new entry
+            hashes[pos] = h;
+            keys[pos] = name;
+            numEntries++;
+        }
+        values[pos] = contact;
+        return previous;
+    }
+
+    /**
+     * Removes and returns a contact from the database, with the key the
+     * supplied name. The entries that follow in the same probe run are
+     * shifted back into the gap, so later searches never stop early.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact object mapped to the name, or null if the
+     * name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        assert name != null && !name.trim().equals("");
+        int gap = findPos(name, hash(name));
+        Contact removed = values[gap];
+        if (removed == null) {
+            return null;
+        }
+        int pos = (gap + 1) & mask;
+        while (keys[pos] != null) {
+            int home = hashes[pos] & mask;
+            // the entry at pos may fill the gap unless its home lies cyclically in (gap, pos]
+            if (((pos - home) & mask) >= ((pos - gap) & mask)) {
+                hashes[gap] = hashes[pos];
+                keys[gap] = keys[pos];
+                values[gap] = values[pos];
+                gap = pos;
+            }
+            pos = (pos + 1) & mask;
+        }
+        hashes[gap] = 0;
+        keys[gap] = null;
+        values[gap] = null;
+        numEntries--;
+        return removed;
+    }
+
+    /**
+     * Prints the names and affiliations of all the contacts in the database in
+     * alphabetic order.
+     * @pre true
+     */
+    @Override
+    public void displayDB() {
+        System.out.println("capacity " + keys.length + " size " + numEntries + " Load factor " + loadFactor() + "%");
+        Contact[] toBeSortedTable = new Contact[numEntries];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                System.out.println(i + ": " + values[i].toString());
+                toBeSortedTable[j] = values[i];
+                j++;
+            }
+        }
+        Arrays.sort(toBeSortedTable, (a, b) -> a.getName().compareTo(b.getName()));
+        System.out.println("\nContacts in alphabetical order:");
+        for (int i = 0; i < numEntries; i++) {
+            System.out.println(i + " " + toBeSortedTable[i].toString());
+        }
+    }
+
+    private void allocate(int capacity) {
+        hashes = new int[capacity];
+        keys = new String[capacity];
+        values = new Contact[capacity];
+        mask = capacity - 1;
+        numEntries = 0;
+    }
+
+    /**
+     * Doubles the table and re-inserts every entry using its cached hash, so
+     * no string is hashed again.
+     */
+    private void resizeTable() {
+        if (keys.length == MAXIMUM_CAPACITY) {
+            return; // cannot grow further, probing still terminates while a slot is free
+        }
+        int[] oldHashes = hashes;
+        String[] oldKeys = keys;
+        Contact[] oldValues = values;
+        int oldEntries = numEntries;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int pos = oldHashes[i] & mask;
+                while (keys[pos] != null) {
+                    pos = (pos + 1) & mask; // no duplicates, so just find the first empty slot
+                }
+                hashes[pos] = oldHashes[i];
+                keys[pos] = oldKeys[i];
+                values[pos] = oldValues[i];
+            }
+        }
+        numEntries = oldEntries;
+    }
+}
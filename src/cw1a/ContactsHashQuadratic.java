@@ -0,0 +1,356 @@
+package cw1a;
+
+import java.util.Arrays;
+
+/**
+ * Hash table with open addressing, quadratic probing and lazy deletion:
+ * the design sketched, commented out, in ContactsHashChained, made to work.
+ *
+ * A name is looked for at h, h+1, h+4, h+9, ... (mod capacity) from its
+ * home slot h. A removed contact's slot is marked DELETED rather than
+ * emptied, so the probe sequences of the names beyond it are not broken.
+ * A put that passes a DELETED slot on its way to an empty one stores the
+ * new contact there instead, and one that finds its name beyond a DELETED
+ * slot moves it back into that slot, so probe sequences shorten again.
+ *
+ * The capacity is prime, and live plus DELETED slots never exceed
+ * maxLoadFactor (at most 50%) of it. Quadratic probing then visits
+ * (capacity+1)/2 distinct slots, so it always reaches an empty one. When
+ * a put would pass that limit the table is rehashed, keeping only live
+ * contacts, at the prime capacity that puts them at half of maxLoadFactor:
+ * larger if the table is growing, the same or smaller if the limit was
+ * reached through DELETED markers, which that rehash clears.
+ */
+public class ContactsHashQuadratic implements IContactDB {
+
+    private static final int INITIAL_CAPACITY = 1031; // prime
+    private static final int MAX_CAPACITY = 2147483629; // the largest prime an array can be sized to
+    private static final Contact DELETED = new Contact("__DELETED__", "0"); // marks a removed contact's slot; compared by reference, so no real contact can match it
+
+    private final IHashStrategy hashStrategy;
+    private double maxLoadFactor = 50.0; // live and DELETED slots, as a percentage of capacity, before a rehash
+    private Contact[] table;   // contact in each slot: null if never used, DELETED if removed
+    private int[] hashes;      // hash of the name in each used slot, compared before names
+    private int numEntries;    // live contacts
+    private int numDeleted;    // DELETED slots
+    private long totalVisited = 0;
+    private long rehashes = 0;
+
+    /**
+     * Constructor - hash table with quadratic probing, hashing names with SpreadHash
+     */
+    public ContactsHashQuadratic() {
+        this(new SpreadHash());
+    }
+
+    /**
+     * Constructor - hash table with quadratic probing
+     * @pre hashStrategy not null
+     * @param hashStrategy the hash function used to place names in slots
+     */
+    public ContactsHashQuadratic(IHashStrategy hashStrategy) {
+        assert hashStrategy != null;
+        System.out.println("Hash Table with open addressing (quadratic probing, lazy deletion)");
+        this.hashStrategy = hashStrategy;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Sets the rehash threshold. It counts DELETED slots as well as live ones,
+     * and may not exceed 50%, beyond which quadratic probing is no longer
+     * sure to find an empty slot. Takes effect from the next put.
+     * @pre 0 < maxLoadFactor <= 50
+     * @param maxLoadFactor the highest percentage of used slots tolerated before rehashing
+     */
+    public void setMaxLoadFactor(double maxLoadFactor) {
+        assert 0.0 < maxLoadFactor && maxLoadFactor <= 50.0;
+        this.maxLoadFactor = maxLoadFactor;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return numEntries;
+    }
+
+    /**
+     * @return the slots visited by every operation since the last reset,
+     * held at Integer.MAX_VALUE rather than wrapping negative
+     */
+    @Override
+    public int getTotalVisited() {
+        return (int) Math.min(totalVisited, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        totalVisited = 0;
+    }
+
+    /**
+     * @pre true
+     * @return the number of DELETED slots waiting to be reused or cleared
+     */
+    public int getDeletedCount() {
+        return numDeleted;
+    }
+
+    /**
+     * @pre true
+     * @return the number of rehashes so far, whether they grew, shrank or
+     * only cleared DELETED slots
+     */
+    public long getRehashCount() {
+        return rehashes;
+    }
+
+    /**
+     * @pre true
+     * @return the number of slots
+     */
+    public int getCapacity() {
+        return table.length;
+    }
+
+    /**
+     * Empties the database, keeping the current capacity.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        Arrays.fill(table, null);
+        numEntries = 0;
+        numDeleted = 0;
+    }
+
+    @Override
+    public int size() {
+        return numEntries;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return numEntries == 0;
+    }
+
+    /**
+     * Calculates the value for the table's current load factor.
+     * @return live contacts as a percentage of capacity
+     */
+    private double loadFactor() {
+        return (double) numEntries / (double) table.length * 100.0;
+    }
+
+    /**
+     * Locates the slot holding a name, or the empty slot that ends its probe
+     * sequence.
+     * @param name the key to locate
+     * @param h the hash of name
+     * @return the slot where name is held, or the empty slot where the search stopped
+     */
+    private int findPos(String name, int h) {
+        int capacity = table.length;
+        long pos = (h & 0x7fffffff) % capacity;
+        totalVisited++;
+        for (int i = 1; ; i++) {
+            Contact contact = table[(int) pos];
+            if (contact == null || (contact != DELETED && hashes[(int) pos] == h && name.equals(contact.getName()))) {
+                return (int) pos;
+            }
+            pos += 2 * i - 1; // (i)^2 - (i-1)^2: the next square offset from the home slot
+            if (pos >= capacity) {
+                pos -= capacity;
+            }
+            totalVisited++;
+        }
+    }
+
+    /**
+     * Determines whether a contact's name exists as a key inside the database.
+     * @pre name is not null and not empty string
+     * @param name the contact name (key) to locate
+     * @return true iff the name exists as a key in the database
+     */
+    @Override
+    public boolean containsName(String name) {
+        assert name != null && !name.equals("");
+        return table[findPos(name, hashStrategy.hash(name))] != null;
+    }
+
+    /**
+     * Returns a contact object mapped to the supplied name.
+     * @pre name not null and not empty string
+     * @param name The contact name (key) to locate
+     * @return the Contact object mapped to the key name if the name exists as
+     * key in the database, otherwise null
+     */
+    @Override
+    public Contact get(String name) {
+        assert name != null && !name.trim().equals("");
+        return table[findPos(name, hashStrategy.hash(name))];
+    }
+
+    /**
+     * Inserts a Contact object into the database, with the key of the supplied
+     * contact's name. Reuses the first DELETED slot on the name's probe
+     * sequence, if any.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        assert name != null && !name.trim().equals("");
+        int h = hashStrategy.hash(name);
+        int capacity = table.length;
+        long pos = (h & 0x7fffffff) % capacity;
+        int firstDeleted = -1;
+        totalVisited++;
+        for (int i = 1; ; i++) {
+            Contact held = table[(int) pos];
+            if (held == null) {
+                break;
+            }
+            if (held == DELETED) {
+                if (firstDeleted < 0) {
+                    firstDeleted = (int) pos;
+                }
+            } else if (hashes[(int) pos] == h && name.equals(held.getName())) {
+                if (firstDeleted >= 0) { // move it back to the earlier slot, so later searches stop sooner
+                    table[firstDeleted] = contact;
+                    hashes[firstDeleted] = h;
+                    table[(int) pos] = DELETED;
+                } else {
+                    table[(int) pos] = contact;
+                }
+                return held;
+            }
+            pos += 2 * i - 1;
+            if (pos >= capacity) {
+                pos -= capacity;
+            }
+            totalVisited++;
+        }
+        if (firstDeleted >= 0) { // a new name in a DELETED slot: no more slots are used than before
+            table[firstDeleted] = contact;
+            hashes[firstDeleted] = h;
+            numDeleted--;
+            numEntries++;
+            return null;
+        }
+        table[(int) pos] = contact;
+        hashes[(int) pos] = h;
+        numEntries++;
+        if ((numEntries + numDeleted) * 100.0 / capacity > maxLoadFactor) {
+            rehash();
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns a contact from the database, with the key the
+     * supplied name, marking its slot DELETED.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact object mapped to the name, or null if the
+     * name does not exist.
+     */
+    @Override
+    public Contact remove(String name) {
+        assert name != null && !name.trim().equals("");
+        int pos = findPos(name, hashStrategy.hash(name));
+        Contact removed = table[pos];
+        if (removed != null) {
+            table[pos] = DELETED;
+            numEntries--;
+            numDeleted++;
+        }
+        return removed;
+    }
+
+    /**
+     * Prints the names and affiliations of all the contacts in the database in
+     * alphabetic order.
+     * @pre true
+     */
+    @Override
+    public void displayDB() {
+        System.out.println("capacity " + table.length + " size " + numEntries + " deleted " + numDeleted
+                + " Load factor " + loadFactor() + "%");
+        Contact[] toBeSortedTable = new Contact[numEntries];
+        int j = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null && table[i] != DELETED) {
+                System.out.println(i + ": " + table[i].toString());
+                toBeSortedTable[j] = table[i];
+                j++;
+            }
+        }
+        Arrays.sort(toBeSortedTable, (a, b) -> a.getName().compareTo(b.getName()));
+        System.out.println("\nContacts in alphabetical order:");
+        for (int i = 0; i < numEntries; i++) {
+            System.out.println(i + " " + toBeSortedTable[i].toString());
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new Contact[capacity];
+        hashes = new int[capacity];
+        numEntries = 0;
+        numDeleted = 0;
+    }
+
+    /**
+     * Rebuilds the table with only its live contacts, at the prime capacity
+     * that holds them at half of maxLoadFactor, so at least as many puts
+     * again come before the next rehash. Clears every DELETED slot.
+     */
+    private void rehash() {
+        Contact[] oldTable = table;
+        int[] oldHashes = hashes;
+        int oldEntries = numEntries;
+        long wanted = (long) Math.ceil(oldEntries * 200.0 / maxLoadFactor);
+        allocate(primeAtLeast(Math.max(INITIAL_CAPACITY, Math.min(wanted, MAX_CAPACITY))));
+        int capacity = table.length;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != null && oldTable[i] != DELETED) {
+                long pos = (oldHashes[i] & 0x7fffffff) % capacity;
+                for (int j = 1; table[(int) pos] != null; j++) { // names are unique and there are no DELETED slots yet, so just find the first empty slot
+                    pos += 2 * j - 1;
+                    if (pos >= capacity) {
+                        pos -= capacity;
+                    }
+                }
+                table[(int) pos] = oldTable[i];
+                hashes[(int) pos] = oldHashes[i];
+            }
+        }
+        numEntries = oldEntries;
+        rehashes++;
+    }
+
+    /**
+     * @param n the least capacity wanted
+     * @return the smallest prime >= n, or MAX_CAPACITY if n is larger
+     */
+    private static int primeAtLeast(long n) {
+        if (n >= MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        int candidate = (int) n | 1; // only odd numbers can be prime here
+        while (!isPrime(candidate)) {
+            candidate += 2;
+        }
+        return candidate;
+    }
+
+    private static boolean isPrime(int n) {
+        if (n < 2) return false;
+        if (n % 2 == 0) return n == 2;
+        for (int d = 3; (long) d * d <= n; d += 2) {
+            if (n % d == 0) return false;
+        }
+        return true;
+    }
+}
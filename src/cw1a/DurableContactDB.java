@@ -0,0 +1,243 @@
+package cw1a;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A ContactsHashChained whose contents survive a restart. Every put and
+ * remove that changes the database is appended to a ContactLog in the
+ * database's directory before the change is made, so the database never
+ * holds a change the log has not recorded; opening the directory again restores the last
+ * snapshot and replays the log over it.
+ *
+ * The log is compacted into a ContactSnapshot whenever it grows past
+ * compactLogBytes, and on compact(): the snapshot is saved, then the log
+ * emptied. A crash between the two leaves a log whose records the snapshot
+ * already holds, and replaying them again changes nothing.
+ *
+ * How much a crash can lose is set by the log's sync interval; see
+ * ContactLog. Like ContactsHashChained, one thread at a time may use it.
+ * IContactDB methods cannot throw IOException, so a failure to write the
+ * log is reported as an UncheckedIOException.
+ */
+public class DurableContactDB implements IContactDB, Closeable {
+
+    public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+    public static final long DEFAULT_COMPACT_LOG_BYTES = 64L * 1024 * 1024;
+
+    private static final String SNAPSHOT_FILE = "contacts" + ContactSnapshot.EXTENSION;
+    private static final String LOG_FILE = "contacts.log";
+
+    private final File snapshotFile;
+    private final ContactsHashChained db;
+    private final ContactLog log;
+    private final long compactLogBytes;
+    private IOException compactFailure = null; // from compacting after a write, reported by the next one
+
+    /**
+     * Opens the database held in a directory, with the default sync interval
+     * and compaction threshold.
+     * @pre directory not null
+     * @param directory where the snapshot and log are kept; created if missing
+     * @throws IOException if the directory cannot be read or written
+     */
+    public DurableContactDB(File directory) throws IOException {
+        this(directory, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_COMPACT_LOG_BYTES);
+    }
+
+    /**
+     * Opens the database held in a directory: restores its snapshot, if any,
+     * and replays its log.
+     * @pre directory not null, syncIntervalMillis >= 0, compactLogBytes > 0
+     * @param directory where the snapshot and log are kept; created if missing
+     * @param syncIntervalMillis how often the log is forced to disk (group
+     * commit); 0 forces every put and remove before it returns
+     * @param compactLogBytes the log size at which it is compacted into a new snapshot
+     * @throws IOException if the directory cannot be read or written
+     */
+    public DurableContactDB(File directory, long syncIntervalMillis, long compactLogBytes) throws IOException {
+        assert directory != null && syncIntervalMillis >= 0 && compactLogBytes > 0;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+        this.compactLogBytes = compactLogBytes;
+        this.db = snapshotFile.exists() ? ContactSnapshot.load(snapshotFile) : new ContactsHashChained();
+        File logFile = new File(directory, LOG_FILE);
+        ContactLog.replay(logFile, db);
+        this.log = new ContactLog(logFile, syncIntervalMillis);
+    }
+
+    /**
+     * @pre true
+     * @return the database itself, for its ordered queries; changes made
+     * directly to it are not logged
+     */
+    public ContactsHashChained getDatabase() {
+        return db;
+    }
+
+    @Override
+    public int getNumEntries() {
+        return db.getNumEntries();
+    }
+
+    @Override
+    public int getTotalVisited() {
+        return db.getTotalVisited();
+    }
+
+    @Override
+    public void resetTotalVisited() {
+        db.resetTotalVisited();
+    }
+
+    /**
+     * Empties the database, and its snapshot and log.
+     * @pre true
+     */
+    @Override
+    public void clearDB() {
+        db.clearDB();
+        try {
+            compact();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public boolean containsName(String name) {
+        return db.containsName(name);
+    }
+
+    @Override
+    public Contact get(String name) {
+        return db.get(name);
+    }
+
+    @Override
+    public int size() {
+        return db.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return db.isEmpty();
+    }
+
+    /**
+     * Logs a contact, then inserts it; if the log cannot be written the
+     * database is left unchanged.
+     * @pre contact not null and contact name not empty string
+     * @param contact Contact to add
+     * @return previous Contact with same name if exists, otherwise null
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public Contact put(Contact contact) {
+        assert contact != null && !contact.getName().equals("");
+        append(() -> log.appendPut(contact));
+        Contact previous = db.put(contact);
+        compactIfDue();
+        return previous;
+    }
+
+    /**
+     * Logs the removal of a contact, if there is one to remove, then removes
+     * it; if the log cannot be written the database is left unchanged.
+     * @pre name not null and name not empty string
+     * @param name The name (key) to remove.
+     * @return the removed Contact, or null if the name does not exist.
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    @Override
+    public Contact remove(String name) {
+        assert name != null && !name.equals("");
+        if (!db.containsName(name)) { // nothing would change, so nothing to log
+            return null;
+        }
+        append(() -> log.appendRemove(name));
+        Contact removed = db.remove(name);
+        compactIfDue();
+        return removed;
+    }
+
+    @Override
+    public void displayDB() {
+        db.displayDB();
+    }
+
+    /**
+     * Forces every logged change to disk now, without waiting for the sync interval.
+     * @pre true
+     * @throws IOException if the log cannot be written
+     */
+    public void sync() throws IOException {
+        log.sync();
+    }
+
+    /**
+     * Saves a snapshot of the whole database and empties the log.
+     * @pre true
+     * @throws IOException if the snapshot or log cannot be written
+     */
+    public void compact() throws IOException {
+        log.sync();
+        ContactSnapshot.save(db, snapshotFile);
+        log.truncate();
+    }
+
+    /**
+     * A write to the log, which may fail.
+     */
+    private interface LogWrite {
+        void run() throws IOException;
+    }
+
+    /**
+     * Writes a record to the log, before the change it records is made.
+     * A compaction that failed since the last write is reported instead, and
+     * the write not made, so an exception always means nothing changed.
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    private void append(LogWrite write) {
+        IOException failed = compactFailure;
+        compactFailure = null; // reported once; the next write that finds the log still too big tries again
+        try {
+            if (failed != null) {
+                throw failed;
+            }
+            write.run();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Compacts the log if it has grown past compactLogBytes. The change that
+     * grew it is already logged and applied, so a failure loses nothing and
+     * is kept to report from the next write, not this one.
+     */
+    private void compactIfDue() {
+        try {
+            if (log.size() >= compactLogBytes) {
+                compact();
+            }
+        } catch (IOException ex) {
+            compactFailure = ex;
+        }
+    }
+
+    /**
+     * Syncs the log and closes it. The next open replays it; call compact
+     * first to make that open faster.
+     * @throws IOException if the final sync fails
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+}
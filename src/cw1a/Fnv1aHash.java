@@ -0,0 +1,34 @@
+package cw1a;
+
+/**
+ * A seeded FNV-1a hash over the UTF-16 characters of the string (low byte
+ * then high byte), finished with the MurmurHash3 finalizer. Unlike
+ * String.hashCode the result depends on the seed, so names that collide
+ * under one seed are unlikely to collide under another.
+ */
+public class Fnv1aHash implements IHashStrategy {
+
+    private static final int OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final int seed;
+
+    /**
+     * @pre true
+     * @param seed mixed into the starting state of every hash
+     */
+    public Fnv1aHash(int seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public int hash(String s) {
+        int hash = OFFSET_BASIS ^ seed;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            hash = (hash ^ (ch & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (ch >>> 8)) * FNV_PRIME;
+        }
+        return SpreadHash.mix(hash);
+    }
+}
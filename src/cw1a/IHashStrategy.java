@@ -0,0 +1,19 @@
+package cw1a;
+
+/**
+ * a hash function for contact names, used by a hash table to choose buckets.
+ *
+ * The value returned must depend only on the string, never on the table's
+ * capacity, so that a table can store it alongside each entry and move
+ * entries between tables of different capacities without hashing the
+ * names again.
+ */
+public interface IHashStrategy {
+
+    /**
+     * @pre s not null and not empty string
+     * @param s the key to hash
+     * @return a 32-bit hash of s; any int, including negative values
+     */
+    public int hash(String s);
+}
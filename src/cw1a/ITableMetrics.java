@@ -0,0 +1,73 @@
+package cw1a;
+
+import javax.management.MXBean;
+
+/**
+ * the metrics of a hash table as JMX sees them: register a TableMetrics
+ * and these appear as attributes of an MBean, so a running database can be
+ * watched in jconsole or VisualVM, or scraped by any JMX exporter.
+ *
+ * Each operation's figures come as one composite attribute (see
+ * TableMetrics.OperationStats); probes are the buckets and chain elements
+ * an operation visited, the same things getTotalVisited counts.
+ */
+@MXBean
+public interface ITableMetrics {
+
+    /** @return figures for get */
+    public TableMetrics.OperationStats getGet();
+
+    /** @return figures for containsName */
+    public TableMetrics.OperationStats getContainsName();
+
+    /** @return figures for put */
+    public TableMetrics.OperationStats getPut();
+
+    /** @return figures for remove */
+    public TableMetrics.OperationStats getRemove();
+
+    /** @return figures for getAll and containsAll, one record per batch */
+    public TableMetrics.OperationStats getBatchLookup();
+
+    /** @return figures for putAll, one record per call */
+    public TableMetrics.OperationStats getPutAll();
+
+    /** @return the number of times the table has started growing */
+    public long getGrowCount();
+
+    /** @return the number of times the table has started shrinking */
+    public long getShrinkCount();
+
+    /** @return the time spent moving entries to new tables, over every resize, in ns */
+    public long getResizeTotalNanos();
+
+    /** @return the most time spent moving entries for any one resize, in ns */
+    public long getResizeMaxNanos();
+
+    /** @return the longest single migration step, i.e. the most a resize added to one operation, in ns */
+    public long getMigrationStepMaxNanos();
+
+    /** @return the entries held */
+    public int getSize();
+
+    /** @return the number of buckets */
+    public int getCapacity();
+
+    /** @return entries per bucket, as a percentage */
+    public double getLoadFactor();
+
+    /** @return the longest chain since the table was last resized */
+    public int getMaxChainLength();
+
+    /** @return the mean length of the chains that are not empty, i.e. the expected cost of a hit */
+    public double getMeanChainLength();
+
+    /** @return the buckets and chain elements visited since the table's counter was last reset, as a long that does not overflow */
+    public long getTotalVisited();
+
+    /**
+     * Forgets every operation and resize recorded so far; the gauges
+     * (size, capacity, chains) are unaffected.
+     */
+    public void reset();
+}
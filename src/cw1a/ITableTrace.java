@@ -0,0 +1,57 @@
+package cw1a;
+
+/**
+ * receives the probe trace of a hash table: which names were hashed, which
+ * buckets and chain elements were visited, and when the table was resized.
+ *
+ * Events are passed as raw values, never as ready-made messages, so a table
+ * with tracing switched off (NONE) does no string building and no I/O.
+ * Every method does nothing by default; implementations override only the
+ * events they care about.
+ */
+public interface ITableTrace {
+
+    /**
+     * The trace used when nothing is listening: ignores every event.
+     */
+    public static final ITableTrace NONE = new ITableTrace() { };
+
+    /**
+     * @pre name not null and not empty string
+     * @param name the key that was hashed
+     * @param hash the hash value computed for it
+     */
+    public default void hashed(String name, int hash) { }
+
+    /**
+     * @pre name not null and not empty string
+     * @param name the key being searched for
+     * @param pos the bucket the search starts from
+     */
+    public default void searchStarted(String name, int pos) { }
+
+    /**
+     * @pre contact not null
+     * @param contact the chain element just compared with the key
+     */
+    public default void visited(Contact contact) { }
+
+    /**
+     * @pre contact not null
+     * @param contact the contact the search ended on
+     */
+    public default void found(Contact contact) { }
+
+    /**
+     * @pre name not null and not empty string
+     * @param name the key the search failed to find
+     */
+    public default void notFound(String name) { }
+
+    /**
+     * @pre oldCapacity > 0 and newCapacity > 0
+     * @param oldCapacity the capacity before the resize
+     * @param newCapacity the capacity after the resize
+     */
+    public default void resized(int oldCapacity, int newCapacity) { }
+}
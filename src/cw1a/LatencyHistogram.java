@@ -0,0 +1,108 @@
+package cw1a;
+
+import java.util.Arrays;
+
+/**
+ * A small log-linear histogram, in the manner of HdrHistogram, for the
+ * benchmarks and TableMetrics: each power of two is split into SUB_BUCKETS
+ * linear steps, so any recorded value is reported to within 1/SUB_BUCKETS
+ * of its true size, in constant memory. Recording is a few shifts and an
+ * array increment. Values are usually latencies in ns, but any
+ * non-negative long will do, e.g. the number of probes a lookup made.
+ *
+ * Not thread safe: one thread records, and a reader on another thread
+ * (e.g. JMX) sees counts that are at worst a few records out of date.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long total = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    /**
+     * @pre nanos >= 0
+     * @param nanos the latency to record
+     */
+    public void record(long nanos) {
+        counts[index(nanos)]++;
+        total++;
+        sum += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BITS
+        int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (magnitude - SUB_BITS)) - 1;
+    }
+
+    /**
+     * @pre 0 <= percentile <= 100
+     * @param percentile e.g. 99.9
+     * @return the latency that percentile of recorded values do not exceed
+     */
+    public long percentile(double percentile) {
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) return Math.min(upperBound(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * @pre true
+     * @param nanos a latency threshold
+     * @return how many recorded values were above it
+     */
+    public long countAbove(long nanos) {
+        long above = 0;
+        for (int i = index(nanos) + 1; i < counts.length; i++) above += counts[i];
+        return above;
+    }
+
+    /**
+     * Forgets every recorded value.
+     * @pre true
+     */
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @pre true
+     * @return the exact mean of the recorded values, 0 if there are none
+     */
+    public double mean() {
+        return total == 0 ? 0 : sum / (double) total;
+    }
+
+    public long getTotal() { return total; }
+
+    public long getMax() { return max; }
+
+    /**
+     * @pre true
+     * @return the usual summary line: count, p50, p99, p99.9, p99.99 and max in ns
+     */
+    public String summary() {
+        return String.format("n=%d p50=%d p99=%d p99.9=%d p99.99=%d max=%d",
+                total, percentile(50), percentile(99), percentile(99.9), percentile(99.99), max);
+    }
+}
@@ -0,0 +1,23 @@
+package cw1a;
+
+/**
+ * The original ContactsHashChained hash, kept for comparison: seeded with
+ * the length times the first character, then a base-31 polynomial over the
+ * remaining characters.
+ * The original reduced modulo the table capacity after every character; to
+ * be cacheable the hash must not depend on the capacity, so here it runs in
+ * ordinary int arithmetic and the table reduces it once at the end.
+ */
+public class LegacyHash implements IHashStrategy {
+
+    private static final int PRIME = 31;
+
+    @Override
+    public int hash(String s) {
+        int hash = s.length() * s.charAt(0);
+        for (int i = 1; i < s.length(); i++) {
+            hash = hash * PRIME + s.charAt(i);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,215 @@
+package cw1a;
+
+import java.util.Arrays;
+
+/**
+ * A Bloom filter of the names in a ContactsHashChained, kept from the
+ * table's own hash of each name so nothing is hashed twice. It answers
+ * "definitely not held" for most names that are not, so containsName can
+ * report a miss without touching a bucket or walking a chain.
+ *
+ * The filter is blocked: a name's BITS_PER_NAME bits all lie in one 64-bit
+ * word, so a query costs one memory access however many bits it tests. That
+ * raises the false positive rate a little above a classic Bloom filter of
+ * the same size, about 1% at the 10-15 bits per name kept here, for a
+ * filter that is a fraction of the size of the table's bucket array and so
+ * more likely to be in cache.
+ *
+ * Bits cannot be cleared, since other names may share them, so a removal
+ * leaves its bits set and only raises the false positive rate. The table
+ * rebuilds the filter from scratch when removals since the last build pass
+ * half the names it was sized for, or when it holds more names than that;
+ * both take O(n) operations to happen, so the rebuilds are O(1) amortised
+ * like the table's own resizes. A rebuild sets bits from the hashes cached
+ * in the table's nodes, without rehashing a name.
+ */
+public class NameFilter {
+
+    private static final int BITS_PER_NAME = 6;     // bits set per name, all in one word
+    private static final int BITS_PER_ENTRY = 10;   // filter bits per name it is sized for, at the least
+    private static final int MIN_WORDS = 16;
+    private static final int MAX_WORDS = 1 << 28;   // a word index is taken from 28 bits of the spread hash
+
+    private long[] words;
+    private int sizedFor;     // the names it holds at BITS_PER_ENTRY bits each
+    private int removals = 0; // names removed since the last build, whose bits are still set
+    private long queries = 0;
+    private long rejected = 0;       // queries answered "definitely not held"
+    private long falsePositives = 0; // queries let through for names that were not held
+    private long rebuilds = 0;
+
+    /**
+     * @pre expectedNames >= 0
+     * @param expectedNames how many names the filter is first sized for
+     */
+    NameFilter(int expectedNames) {
+        assert expectedNames >= 0;
+        allocate(expectedNames);
+    }
+
+    private void allocate(int expectedNames) {
+        long needed = ((long) expectedNames * BITS_PER_ENTRY + 63) / 64;
+        int wordCount = (int) Math.max(MIN_WORDS, Math.min(needed, MAX_WORDS)); // any size: see word
+        words = new long[wordCount];
+        sizedFor = (int) Math.min(wordCount * 64L / BITS_PER_ENTRY, Integer.MAX_VALUE);
+        removals = 0;
+    }
+
+    /**
+     * Empties the filter and resizes it, ready to have every name added again.
+     * @pre names >= 0
+     * @param names the number of names about to be added
+     */
+    void rebuild(int names) {
+        allocate((int) Math.min(names + names / 2L, Integer.MAX_VALUE)); // room to grow by half before the next rebuild
+        rebuilds++;
+    }
+
+    /**
+     * Empties the filter, keeping its size.
+     */
+    void clear() {
+        Arrays.fill(words, 0L);
+        removals = 0;
+    }
+
+    /**
+     * @param hash the table's hash of a name being added
+     */
+    void add(int hash) {
+        long h = spread(hash);
+        words[word(h)] |= bits(h);
+    }
+
+    /**
+     * Notes that a name has been removed; its bits stay set.
+     */
+    void removed() {
+        removals++;
+    }
+
+    /**
+     * @param names the number of names the table holds now
+     * @return whether the filter should be rebuilt: it holds more names than
+     * it was sized for, or too many removed names' bits are still set
+     */
+    boolean needsRebuild(int names) {
+        return names > sizedFor || removals > sizedFor / 2;
+    }
+
+    /**
+     * @param hash the table's hash of the name
+     * @return false if the name is certainly not held; true if it may be
+     */
+    boolean mightContain(int hash) {
+        queries++;
+        long h = spread(hash);
+        long bits = bits(h);
+        if ((words[word(h)] & bits) == bits) {
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * Notes that a name the filter let through was not held after all.
+     */
+    void falsePositive() {
+        falsePositives++;
+    }
+
+    /**
+     * @return the word a spread hash chooses, from its top 28 bits scaled to
+     * the number of words by a multiply and shift, so the filter need not be
+     * a power of two in size
+     */
+    private int word(long h) {
+        return (int) (((h >>> 36) * words.length) >>> 28);
+    }
+
+    /**
+     * Spreads a 32-bit hash over 64 bits: the word is chosen by the top 28
+     * and the bits in it by the bottom 36, so the two are independent.
+     */
+    private static long spread(int hash) {
+        long h = (hash & 0xffffffffL) * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 32;
+        h *= 0xd6e8feb86659fd93L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * @return a word with up to BITS_PER_NAME bits set, chosen by successive
+     * 6-bit fields of h (a long shift uses only the low six bits of its count)
+     */
+    private static long bits(long h) {
+        long bits = 0;
+        for (int i = 0; i < BITS_PER_NAME; i++) {
+            bits |= 1L << (h >>> (6 * i));
+        }
+        return bits;
+    }
+
+    /**
+     * @pre true
+     * @return the size of the filter in bits
+     */
+    public long getBitCount() {
+        return words.length * 64L;
+    }
+
+    /**
+     * @pre true
+     * @return the number of queries answered
+     */
+    public long getQueries() {
+        return queries;
+    }
+
+    /**
+     * @pre true
+     * @return the number of queries answered "definitely not held"
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @pre true
+     * @return the fraction of queries for names not held that the filter
+     * let through, measured since the last reset
+     */
+    public double getFalsePositiveRate() {
+        long misses = rejected + falsePositives;
+        return misses == 0 ? 0.0 : falsePositives / (double) misses;
+    }
+
+    /**
+     * @pre true
+     * @return the number of times the filter has been rebuilt
+     */
+    public long getRebuildCount() {
+        return rebuilds;
+    }
+
+    /**
+     * Zeroes the query counters.
+     * @pre true
+     */
+    public void resetCounts() {
+        queries = 0;
+        rejected = 0;
+        falsePositives = 0;
+    }
+
+    /**
+     * @pre true
+     * @return the size and counts of the filter, for reports
+     */
+    @Override
+    public String toString() {
+        return String.format("%d bits (sized for %d names), %d queries, %d rejected, false positive rate %.4f, %d rebuilds",
+                getBitCount(), sizedFor, queries, rejected, getFalsePositiveRate(), rebuilds);
+    }
+}
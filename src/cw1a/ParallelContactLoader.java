@@ -0,0 +1,358 @@
+package cw1a;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a large contact file on several threads. The file is memory-mapped
+ * and cut into one chunk per thread at row boundaries, and each chunk is
+ * parsed by its own ContactFileReader. The result is exactly what the
+ * sequential ContactFileReader.loadInto would give, including which of two
+ * rows with the same name wins.
+ *
+ * Into a ContactsHashConcurrent the contacts are put in parallel too: each
+ * thread puts the contacts of its own share of the table's segments, taking
+ * the chunks in file order, so no two threads ever want the same segment
+ * lock and every row of a name is put by one thread in file order. Any
+ * other IContactDB is single-threaded, so its contacts are put on the
+ * calling thread in file order once parsing is done.
+ *
+ * A quoted field may contain line breaks, so a line break only ends a row
+ * outside quotes, and as in ContactFileReader a quote only opens quoting at
+ * the start of a field: the one in O"Brien is just a character. Whether a
+ * point in the file is inside quotes therefore depends on everything
+ * before it. To cut chunks without a sequential pass, each thread first
+ * runs its share of the file through the quoting state machine from each
+ * of its four states at once; chaining those results from the start of the
+ * file gives the state at every cut point.
+ */
+public class ParallelContactLoader {
+
+    private static final long MAX_SHARE = 1L << 30; // a MappedByteBuffer is limited to 2GB; 1GB shares leave room for a cut to move forward to a row boundary
+
+    // quoting states, as ContactFileReader moves through them
+    private static final int FIELD_START = 0; // at the start of a field, where a quote opens quoting
+    private static final int UNQUOTED = 1;    // in an unquoted field, or after a quoted one's closing quote
+    private static final int QUOTED = 2;      // inside quotes, where a line break is part of the field
+    private static final int QUOTE_SEEN = 3;  // just after a quote inside quotes: closing, or the first of ""
+    private static final int ALL_STATES = FIELD_START | UNQUOTED << 2 | QUOTED << 4 | QUOTE_SEEN << 6;
+
+    /**
+     * The quoting state machine run from all four states at once. A byte of
+     * state holds, in its bits 2s and 2s+1, the state reached from state s;
+     * TRANSITIONS[state << 8 | b] is that byte after reading byte b.
+     */
+    private static final byte[] TRANSITIONS = new byte[256 * 256];
+
+    static {
+        for (int packed = 0; packed < 256; packed++) {
+            for (int b = 0; b < 256; b++) {
+                int next = 0;
+                for (int from = 0; from < 4; from++) {
+                    next |= step((packed >>> (2 * from)) & 3, b) << (2 * from);
+                }
+                TRANSITIONS[packed << 8 | b] = (byte) next;
+            }
+        }
+    }
+
+    private final int threads;
+
+    /**
+     * A loader using one thread per available processor.
+     */
+    public ParallelContactLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @pre threads > 0
+     * @param threads the number of threads that parse, and put into a
+     * ContactsHashConcurrent, in parallel
+     */
+    public ParallelContactLoader(int threads) {
+        assert threads > 0;
+        this.threads = threads;
+    }
+
+    /**
+     * Reads every contact in a file into a database, as if by put in file
+     * order. A ContactsHashConcurrent is filled on the loader's threads.
+     * @pre file not null, db not null
+     * @param file the CSV file to read
+     * @param db the database to fill
+     * @return the number of contacts read
+     * @throws IOException if the file cannot be read, or a row has fewer than three fields
+     */
+    public long load(File file, IContactDB db) throws IOException {
+        assert file != null && db != null;
+        if (db instanceof ContactsHashConcurrent) {
+            return loadConcurrent(file, (ContactsHashConcurrent) db);
+        }
+        List<List<Contact>> chunks = readChunks(file);
+        long rows = 0;
+        for (List<Contact> chunk : chunks) {
+            rows += chunk.size();
+        }
+        if (db instanceof ContactsHashChained) {
+            ((ContactsHashChained) db).ensureCapacity(db.size() + rows); // size the table once for the whole file
+        }
+        for (List<Contact> chunk : chunks) {
+            for (Contact contact : chunk) {
+                db.put(contact);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Parses a file on the loader's threads.
+     * @pre file not null
+     * @param file the CSV file to read
+     * @return the contacts of each chunk, chunks and contacts in file order
+     * @throws IOException if the file cannot be read, or a row has fewer than three fields
+     */
+    public List<List<Contact>> readChunks(File file) throws IOException {
+        assert file != null;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] cuts = cut(channel, pool);
+            List<Future<List<Contact>>> parsed = new ArrayList<>();
+            for (int i = 0; i + 1 < cuts.length; i++) {
+                final long start = cuts[i], end = cuts[i + 1];
+                parsed.add(pool.submit(() -> parse(channel, start, end)));
+            }
+            List<List<Contact>> chunks = new ArrayList<>(parsed.size());
+            for (Future<List<Contact>> chunk : parsed) {
+                chunks.add(get(chunk));
+            }
+            return chunks;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses a file and puts its contacts into a concurrent table, both on
+     * the loader's threads. Each chunk's contacts are sorted, as they are
+     * parsed, by the thread that will put them: thread t puts the names in
+     * the table's segments s with s % threads == t.
+     */
+    private long loadConcurrent(File file, ContactsHashConcurrent db) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] cuts = cut(channel, pool);
+            List<Future<List<List<Contact>>>> parsed = new ArrayList<>();
+            for (int i = 0; i + 1 < cuts.length; i++) {
+                final long start = cuts[i], end = cuts[i + 1];
+                parsed.add(pool.submit(() -> partition(parse(channel, start, end), db)));
+            }
+            List<List<List<Contact>>> chunks = new ArrayList<>(parsed.size());
+            for (Future<List<List<Contact>>> chunk : parsed) {
+                chunks.add(get(chunk));
+            }
+
+            List<Future<Long>> puts = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                puts.add(pool.submit(() -> {
+                    long count = 0;
+                    for (List<List<Contact>> chunk : chunks) { // chunks in file order, so the last row of a name wins
+                        for (Contact contact : chunk.get(thread)) {
+                            db.put(contact);
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            long rows = 0;
+            for (Future<Long> count : puts) {
+                rows += get(count);
+            }
+            return rows;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return contacts split into one list per thread by the segment of db
+     * that each name is in, each list in the order given
+     */
+    private List<List<Contact>> partition(List<Contact> contacts, ContactsHashConcurrent db) {
+        List<List<Contact>> byThread = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            byThread.add(new ArrayList<>(contacts.size() / threads + 16));
+        }
+        for (Contact contact : contacts) {
+            byThread.get(db.segmentOf(contact.getName()) % threads).add(contact);
+        }
+        return byThread;
+    }
+
+    /**
+     * Cuts a file into chunks at row boundaries, at least one per thread.
+     * @return the offsets at which chunks start, then the file's size
+     */
+    private long[] cut(FileChannel channel, ExecutorService pool) throws IOException {
+        long size = channel.size();
+        int parts = (int) Math.max(threads, (size + MAX_SHARE - 1) / MAX_SHARE);
+        long[] cuts = new long[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            cuts[i] = size * i / parts;
+        }
+
+        // pass 1: how each raw share moves the quoting state, worked out in parallel
+        List<Future<Integer>> shareStates = new ArrayList<>();
+        for (int i = 0; i < parts; i++) {
+            final long start = cuts[i], end = cuts[i + 1];
+            shareStates.add(pool.submit(() -> exitStates(channel, start, end)));
+        }
+        // move each cut forward to just after the first line break outside quotes
+        int state = FIELD_START;
+        for (int i = 1; i < parts; i++) {
+            state = (get(shareStates.get(i - 1)) >>> (2 * state)) & 3; // the state at raw cut i
+            cuts[i] = rowStart(channel, cuts[i], state);
+        }
+        for (int i = 1; i < parts; i++) {
+            cuts[i] = Math.max(cuts[i], cuts[i - 1]); // a very long row may swallow a whole share
+        }
+        return cuts;
+    }
+
+    /**
+     * @return the state ContactFileReader's quoting moves to on reading b in
+     * the given state
+     */
+    private static int step(int state, int b) {
+        boolean delimiter = b == ',' || b == '\n' || b == '\r';
+        switch (state) {
+            case FIELD_START:
+                return b == '"' ? QUOTED : delimiter ? FIELD_START : UNQUOTED;
+            case QUOTED:
+                return b == '"' ? QUOTE_SEEN : QUOTED;
+            case QUOTE_SEEN:
+                return b == '"' ? QUOTED : delimiter ? FIELD_START : UNQUOTED; // "" is a quote; anything else follows a closing quote
+            default:
+                return delimiter ? FIELD_START : UNQUOTED; // a quote in an unquoted field is just a character
+        }
+    }
+
+    /**
+     * @return the quoting state at end reached from each of the four states
+     * at start, packed as TRANSITIONS packs them
+     */
+    private static int exitStates(FileChannel channel, long start, long end) throws IOException {
+        int states = ALL_STATES;
+        if (start == end) {
+            return states;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        while (buffer.hasRemaining()) {
+            states = TRANSITIONS[states << 8 | (buffer.get() & 0xff)] & 0xff;
+        }
+        return states;
+    }
+
+    /**
+     * @param state the quoting state at position
+     * @return the position just after the first line break at or after
+     * position that is outside quotes, or the end of the file
+     */
+    private static long rowStart(FileChannel channel, long position, int state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long pos = position;
+        while (true) {
+            buffer.clear();
+            int n = channel.read(buffer, pos);
+            if (n < 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < n; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n' && state != QUOTED) {
+                    return pos + i + 1;
+                }
+                state = step(state, b & 0xff);
+            }
+            pos += n;
+        }
+    }
+
+    private static List<Contact> parse(FileChannel channel, long start, long end) throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        if (start == end) {
+            return contacts;
+        }
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        try (ContactFileReader reader = new ContactFileReader(new BufferChannel(mapped))) {
+            Contact contact;
+            while ((contact = reader.readContact()) != null) {
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while loading", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Presents a (mapped) buffer as a channel, so a ContactFileReader can
+     * parse one chunk of the file.
+     */
+    private static final class BufferChannel implements ReadableByteChannel {
+        private final ByteBuffer source;
+        private boolean open = true;
+
+        BufferChannel(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(dst.remaining(), source.remaining());
+            ByteBuffer slice = source.slice();
+            slice.limit(n);
+            dst.put(slice);
+            source.position(source.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
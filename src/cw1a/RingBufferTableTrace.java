@@ -0,0 +1,116 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the most recent probe trace events in memory so they can be
+ * inspected after the fact, e.g. once a slow lookup has been noticed.
+ * Recording an event only stores references and ints into preallocated
+ * arrays; messages are built when the trace is read back with events().
+ */
+public class RingBufferTableTrace implements ITableTrace {
+
+    private static final byte HASHED = 0, SEARCH_STARTED = 1, VISITED = 2,
+            FOUND = 3, NOT_FOUND = 4, RESIZED = 5;
+
+    private final byte[] kinds;
+    private final String[] names;
+    private final int[] firstValues;
+    private final int[] secondValues;
+    private long recorded = 0; // events recorded since creation or clear(); the next is written at recorded % capacity
+
+    /**
+     * @pre capacity > 0
+     * @param capacity the number of most recent events kept
+     */
+    public RingBufferTableTrace(int capacity) {
+        assert capacity > 0;
+        kinds = new byte[capacity];
+        names = new String[capacity];
+        firstValues = new int[capacity];
+        secondValues = new int[capacity];
+    }
+
+    private void record(byte kind, String name, int first, int second) {
+        int slot = (int) (recorded % kinds.length);
+        kinds[slot] = kind;
+        names[slot] = name;
+        firstValues[slot] = first;
+        secondValues[slot] = second;
+        recorded++;
+    }
+
+    @Override
+    public void hashed(String name, int hash) {
+        record(HASHED, name, hash, 0);
+    }
+
+    @Override
+    public void searchStarted(String name, int pos) {
+        record(SEARCH_STARTED, name, pos, 0);
+    }
+
+    @Override
+    public void visited(Contact contact) {
+        record(VISITED, contact.getName(), 0, 0);
+    }
+
+    @Override
+    public void found(Contact contact) {
+        record(FOUND, contact.getName(), 0, 0);
+    }
+
+    @Override
+    public void notFound(String name) {
+        record(NOT_FOUND, name, 0, 0);
+    }
+
+    @Override
+    public void resized(int oldCapacity, int newCapacity) {
+        record(RESIZED, null, oldCapacity, newCapacity);
+    }
+
+    /**
+     * @pre true
+     * @return the total number of events recorded, including those overwritten
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Forgets every recorded event.
+     * @pre true
+     */
+    public void clear() {
+        recorded = 0;
+        Arrays.fill(names, null);
+    }
+
+    /**
+     * @pre true
+     * @return the retained events as readable lines, oldest first
+     */
+    public List<String> events() {
+        int retained = (int) Math.min(recorded, kinds.length);
+        List<String> lines = new ArrayList<>(retained);
+        for (long i = recorded - retained; i < recorded; i++) {
+            int slot = (int) (i % kinds.length);
+            lines.add(describe(kinds[slot], names[slot], firstValues[slot], secondValues[slot]));
+        }
+        return lines;
+    }
+
+    private static String describe(byte kind, String name, int first, int second) {
+        switch (kind) {
+            case HASHED:         return "hashed '" + name + "' as " + first;
+            case SEARCH_STARTED: return "search for " + name + " from position " + first;
+            case VISITED:        return "visited " + name;
+            case FOUND:          return "found " + name;
+            case NOT_FOUND:      return name + " not found";
+            default:             return "resized " + first + " -> " + second;
+        }
+    }
+}
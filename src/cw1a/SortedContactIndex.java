@@ -0,0 +1,273 @@
+package cw1a;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Contacts kept in alphabetical order of name, in a skip list, for a hash
+ * table to maintain alongside its buckets. put and remove cost O(log n)
+ * expected comparisons; listing in order is a walk along the bottom level,
+ * and a range or prefix query costs one O(log n) search plus the contacts
+ * it returns.
+ *
+ * Each entry is linked into the bottom level and, with probability 1/4 per
+ * level, into the levels above it, so a search skips ahead along the upper
+ * levels before dropping down. Levels are drawn from the index's own
+ * xorshift generator, so the shape does not depend on the names and no
+ * order of insertion is adversarial.
+ */
+public class SortedContactIndex implements Iterable<Contact> {
+
+    private static final int MAX_LEVEL = 16; // 4^16 entries before the top level runs out
+
+    private static final class Entry {
+        final String name;
+        Contact contact;
+        final Entry[] next; // next[i] is the following entry on level i
+
+        Entry(String name, Contact contact, int levels) {
+            this.name = name;
+            this.contact = contact;
+            this.next = new Entry[levels];
+        }
+    }
+
+    private final Entry head = new Entry(null, null, MAX_LEVEL); // sentinel before the first entry on every level
+    private final Entry[] update = new Entry[MAX_LEVEL];        // reused by put and remove for the last entry before the target on each level
+    private Entry[] tails = null; // the last entry on each level, kept by append; null once put or remove may have moved them
+    private int levels = 1;  // levels in use
+    private int size = 0;
+    private int seed = 0x2545F491;
+
+    /**
+     * @pre true
+     * @return the number of contacts in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties the index.
+     * @pre true
+     */
+    public void clear() {
+        for (int i = 0; i < MAX_LEVEL; i++) {
+            head.next[i] = null;
+        }
+        tails = null;
+        levels = 1;
+        size = 0;
+    }
+
+    /**
+     * Adds a contact, or replaces the contact with the same name.
+     * @pre contact not null with a non-empty name
+     * @param contact the contact to add
+     * @return the contact replaced, or null if the name was new
+     */
+    public Contact put(Contact contact) {
+        assert contact != null;
+        String name = contact.getName();
+        Entry entry = findPredecessors(name);
+        if (entry != null && entry.name.equals(name)) {
+            Contact previous = entry.contact;
+            entry.contact = contact;
+            return previous;
+        }
+        int level = randomLevel();
+        if (level > levels) {
+            for (int i = levels; i < level; i++) {
+                update[i] = head;
+            }
+            levels = level;
+        }
+        Entry added = new Entry(name, contact, level);
+        for (int i = 0; i < level; i++) {
+            added.next[i] = update[i].next[i];
+            update[i].next[i] = added;
+        }
+        tails = null;
+        size++;
+        return null;
+    }
+
+    /**
+     * Adds a contact after every contact already in the index, without
+     * comparing names: filling the index from contacts already in
+     * alphabetical order costs O(1) each rather than O(log n).
+     * @pre contact not null, and its name comes after every name in the index
+     * @param contact the contact to add
+     */
+    public void append(Contact contact) {
+        assert contact != null;
+        if (tails == null) {
+            tails = new Entry[MAX_LEVEL];
+            Entry x = head;
+            for (int i = MAX_LEVEL - 1; i >= 0; i--) { // walk to the end of each level, top down
+                while (x.next[i] != null) {
+                    x = x.next[i];
+                }
+                tails[i] = x;
+            }
+        }
+        assert tails[0] == head || tails[0].name.compareTo(contact.getName()) < 0;
+        int level = randomLevel();
+        levels = Math.max(levels, level);
+        Entry added = new Entry(contact.getName(), contact, level);
+        for (int i = 0; i < level; i++) {
+            tails[i].next[i] = added;
+            tails[i] = added;
+        }
+        size++;
+    }
+
+    /**
+     * Removes the contact with a name.
+     * @pre name not null
+     * @param name the name to remove
+     * @return the contact removed, or null if there was none
+     */
+    public Contact remove(String name) {
+        assert name != null;
+        Entry entry = findPredecessors(name);
+        if (entry == null || !entry.name.equals(name)) {
+            return null;
+        }
+        for (int i = 0; i < entry.next.length; i++) {
+            update[i].next[i] = entry.next[i];
+        }
+        tails = null;
+        while (levels > 1 && head.next[levels - 1] == null) {
+            levels--;
+        }
+        size--;
+        return entry.contact;
+    }
+
+    /**
+     * Fills update with the last entry before name on each level in use.
+     * @return the first entry whose name is not before name, or null
+     */
+    private Entry findPredecessors(String name) {
+        Entry x = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].name.compareTo(name) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        return x.next[0];
+    }
+
+    /**
+     * @return the first entry whose name is not before name, or null
+     */
+    private Entry ceiling(String name) {
+        Entry x = head;
+        for (int i = levels - 1; i >= 0; i--) {
+            while (x.next[i] != null && x.next[i].name.compareTo(name) < 0) {
+                x = x.next[i];
+            }
+        }
+        return x.next[0];
+    }
+
+    /**
+     * Contacts whose names lie in a range, in alphabetical order.
+     * @pre fromName not null, toName not null
+     * @param fromName the first name of the range, included
+     * @param toName the end of the range, excluded
+     * @return the contacts with fromName <= name < toName
+     */
+    public List<Contact> range(String fromName, String toName) {
+        assert fromName != null && toName != null;
+        List<Contact> found = new ArrayList<>();
+        for (Entry e = ceiling(fromName); e != null && e.name.compareTo(toName) < 0; e = e.next[0]) {
+            found.add(e.contact);
+        }
+        return found;
+    }
+
+    /**
+     * Contacts whose names start with a prefix, e.g. "Mac" for every
+     * surname beginning Mac, in alphabetical order.
+     * @pre prefix not null
+     * @param prefix the start of the names wanted
+     * @return the contacts whose names start with prefix
+     */
+    public List<Contact> withPrefix(String prefix) {
+        assert prefix != null;
+        List<Contact> found = new ArrayList<>();
+        for (Entry e = ceiling(prefix); e != null && e.name.startsWith(prefix); e = e.next[0]) {
+            found.add(e.contact);
+        }
+        return found;
+    }
+
+    /**
+     * @return every contact, in alphabetical order of name
+     */
+    @Override
+    public Iterator<Contact> iterator() {
+        return iterator(head.next[0]);
+    }
+
+    /**
+     * @pre fromName not null
+     * @param fromName where to start
+     * @return the contacts from fromName (included) onwards, in alphabetical order
+     */
+    public Iterator<Contact> iteratorFrom(String fromName) {
+        assert fromName != null;
+        return iterator(ceiling(fromName));
+    }
+
+    /**
+     * @pre name not null
+     * @param name where to start
+     * @return the contacts after name (excluded) onwards, in alphabetical order
+     */
+    public Iterator<Contact> iteratorAfter(String name) {
+        assert name != null;
+        Entry first = ceiling(name);
+        if (first != null && first.name.equals(name)) {
+            first = first.next[0];
+        }
+        return iterator(first);
+    }
+
+    private static Iterator<Contact> iterator(Entry first) {
+        return new Iterator<Contact>() {
+            private Entry next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Contact next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Contact contact = next.contact;
+                next = next.next[0];
+                return contact;
+            }
+        };
+    }
+
+    /**
+     * @return a level from 1 to MAX_LEVEL, each level above the first with probability 1/4
+     */
+    private int randomLevel() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        int level = 1 + Integer.numberOfTrailingZeros(seed | (1 << 30)) / 2; // two zero bits per extra level
+        return Math.min(level, MAX_LEVEL);
+    }
+}
@@ -0,0 +1,29 @@
+package cw1a;
+
+/**
+ * String.hashCode, which each String computes once and caches, followed by
+ * the MurmurHash3 finalizer so that every input bit affects every output bit
+ * before the table reduces the value to a bucket.
+ */
+public class SpreadHash implements IHashStrategy {
+
+    @Override
+    public int hash(String s) {
+        return mix(s.hashCode());
+    }
+
+    /**
+     * MurmurHash3's 32-bit finalizer (fmix32).
+     * @pre true
+     * @param h the value to mix
+     * @return h with its bits thoroughly mixed
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
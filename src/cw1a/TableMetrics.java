@@ -0,0 +1,319 @@
+package cw1a;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Operation metrics for a ContactsHashChained, switched on with its
+ * enableMetrics: a count, a latency histogram and a probe-length histogram
+ * for each kind of operation, the number and cost of resizes, and gauges of
+ * the table's size, load factor and chain lengths.
+ *
+ * Every operation is counted and its probes recorded, which costs two
+ * histogram increments. Timing is sampled: by default one get, containsName,
+ * put or remove in DEFAULT_SAMPLE_INTERVAL is timed, since reading the clock
+ * around every one stops the CPU overlapping the cache misses of
+ * consecutive lookups and more than triples the cost of a get. Batch calls
+ * and resizes are always timed. A table with metrics off only tests that
+ * its metrics field is null.
+ *
+ * The figures can be read from any thread, e.g. by JMX once register has
+ * been called, but like the table itself they are not synchronized, so a
+ * reader may see them a few operations out of date. The chain gauges walk
+ * nothing: the table keeps its count of buckets in use and the longest
+ * chain up to date as it links nodes in, and starts the longest chain
+ * again at each resize, so until then it may include chains removals have
+ * since shortened.
+ */
+public class TableMetrics implements ITableMetrics {
+
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    static final int GET = 0, CONTAINS_NAME = 1, PUT = 2, REMOVE = 3, BATCH_LOOKUP = 4, PUT_ALL = 5;
+    static final long NOT_TIMED = Long.MIN_VALUE; // returned by start for an operation left out of the latency sample
+    private static final int OPERATIONS = 6;
+
+    private final ContactsHashChained db;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[OPERATIONS];
+    private final LatencyHistogram[] probes = new LatencyHistogram[OPERATIONS];
+    private long growCount = 0;
+    private long shrinkCount = 0;
+    private long resizeTotalNanos = 0;
+    private long resizeMaxNanos = 0;
+    private long currentResizeNanos = 0; // migration time so far of the resize in progress
+    private long migrationStepMaxNanos = 0;
+    private int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private int untilSample = 1; // operations until the next timed one
+
+    /**
+     * @pre db not null
+     * @param db the table whose gauges are reported
+     */
+    TableMetrics(ContactsHashChained db) {
+        assert db != null;
+        this.db = db;
+        for (int op = 0; op < OPERATIONS; op++) {
+            latencies[op] = new LatencyHistogram();
+            probes[op] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Sets how many single-name operations there are for each one timed.
+     * @pre interval > 0
+     * @param interval 1 to time every operation, n to time one in n
+     */
+    public void setSampleInterval(int interval) {
+        assert interval > 0;
+        sampleInterval = interval;
+        untilSample = 1;
+    }
+
+    /**
+     * Called as a single-name operation starts.
+     * @return System.nanoTime if this operation is to be timed, otherwise NOT_TIMED
+     */
+    long start() {
+        if (--untilSample > 0) {
+            return NOT_TIMED;
+        }
+        untilSample = sampleInterval;
+        return System.nanoTime();
+    }
+
+    /**
+     * Records one operation.
+     * @param op which operation, e.g. GET
+     * @param startNanos what start returned, or System.nanoTime when it started
+     * @param visited the buckets and chain elements it visited
+     */
+    void record(int op, long startNanos, long visited) {
+        if (startNanos != NOT_TIMED) {
+            latencies[op].record(Math.max(0, System.nanoTime() - startNanos));
+        }
+        probes[op].record(visited);
+    }
+
+    /**
+     * Records the start of a resize.
+     * @param oldCapacity the capacity before
+     * @param newCapacity the capacity being moved to
+     */
+    void resizeStarted(int oldCapacity, int newCapacity) {
+        if (newCapacity > oldCapacity) {
+            growCount++;
+        } else {
+            shrinkCount++;
+        }
+        currentResizeNanos = 0;
+    }
+
+    /**
+     * Records one step of moving entries to the new table.
+     * @param nanos how long the step took
+     * @param finished whether it moved the last of the old table
+     */
+    void migrated(long nanos, boolean finished) {
+        currentResizeNanos += nanos;
+        resizeTotalNanos += nanos;
+        migrationStepMaxNanos = Math.max(migrationStepMaxNanos, nanos);
+        if (finished) {
+            resizeMaxNanos = Math.max(resizeMaxNanos, currentResizeNanos);
+        }
+    }
+
+    @Override
+    public OperationStats getGet() {
+        return stats(GET);
+    }
+
+    @Override
+    public OperationStats getContainsName() {
+        return stats(CONTAINS_NAME);
+    }
+
+    @Override
+    public OperationStats getPut() {
+        return stats(PUT);
+    }
+
+    @Override
+    public OperationStats getRemove() {
+        return stats(REMOVE);
+    }
+
+    @Override
+    public OperationStats getBatchLookup() {
+        return stats(BATCH_LOOKUP);
+    }
+
+    @Override
+    public OperationStats getPutAll() {
+        return stats(PUT_ALL);
+    }
+
+    private OperationStats stats(int op) {
+        return new OperationStats(latencies[op], probes[op]);
+    }
+
+    @Override
+    public long getGrowCount() {
+        return growCount;
+    }
+
+    @Override
+    public long getShrinkCount() {
+        return shrinkCount;
+    }
+
+    @Override
+    public long getResizeTotalNanos() {
+        return resizeTotalNanos;
+    }
+
+    @Override
+    public long getResizeMaxNanos() {
+        return resizeMaxNanos;
+    }
+
+    @Override
+    public long getMigrationStepMaxNanos() {
+        return migrationStepMaxNanos;
+    }
+
+    @Override
+    public int getSize() {
+        return db.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return db.getCapacity();
+    }
+
+    @Override
+    public double getLoadFactor() {
+        return db.size() * 100.0 / db.getCapacity();
+    }
+
+    @Override
+    public int getMaxChainLength() {
+        return db.getLongestChain();
+    }
+
+    @Override
+    public double getMeanChainLength() {
+        int used = db.getUsedBucketCount();
+        return used == 0 ? 0 : db.size() / (double) used;
+    }
+
+    @Override
+    public long getTotalVisited() {
+        return db.getTotalVisitedCount();
+    }
+
+    @Override
+    public void reset() {
+        for (int op = 0; op < OPERATIONS; op++) {
+            latencies[op].reset();
+            probes[op].reset();
+        }
+        growCount = 0;
+        shrinkCount = 0;
+        resizeTotalNanos = 0;
+        resizeMaxNanos = 0;
+        migrationStepMaxNanos = 0;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, as
+     * cw1a:type=ContactsHashChained,name=&lt;name&gt;.
+     * @pre name not null and not already registered
+     * @param name distinguishes this table from others in the same JVM
+     * @return the name registered under, for unregister
+     * @throws JMException if the name is malformed or already taken
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("cw1a:type=ContactsHashChained,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Removes a registration made by register.
+     * @pre objectName was returned by register
+     * @param objectName the name registered under
+     * @throws JMException if it is not registered
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    }
+
+    /**
+     * @pre true
+     * @return one line per operation that has been recorded, and one for resizes
+     */
+    @Override
+    public String toString() {
+        String[] names = {"get", "containsName", "put", "remove", "batchLookup", "putAll"};
+        StringBuilder sb = new StringBuilder();
+        for (int op = 0; op < OPERATIONS; op++) {
+            if (probes[op].getTotal() > 0) {
+                sb.append(String.format("%-12s %s%n", names[op], stats(op)));
+            }
+        }
+        sb.append(String.format("resizes      grew %d, shrank %d, %.3f ms moving entries (max %.3f ms per resize, %d ns per step)",
+                growCount, shrinkCount, resizeTotalNanos / 1e6, resizeMaxNanos / 1e6, migrationStepMaxNanos));
+        return sb.toString();
+    }
+
+    /**
+     * A snapshot of one operation's figures. Its getters are what JMX shows
+     * as the fields of the operation's attribute. The count is of every
+     * operation, the latencies of those sampled.
+     */
+    public static final class OperationStats {
+        private final long count;
+        private final double meanNanos;
+        private final long p50Nanos, p99Nanos, p999Nanos, maxNanos;
+        private final double meanProbes;
+        private final long p99Probes, maxProbes;
+
+        OperationStats(LatencyHistogram latency, LatencyHistogram probes) {
+            count = probes.getTotal();
+            meanNanos = latency.mean();
+            p50Nanos = latency.percentile(50);
+            p99Nanos = latency.percentile(99);
+            p999Nanos = latency.percentile(99.9);
+            maxNanos = latency.getMax();
+            meanProbes = probes.mean();
+            p99Probes = probes.percentile(99);
+            maxProbes = probes.getMax();
+        }
+
+        public long getCount() { return count; }
+
+        public double getMeanNanos() { return meanNanos; }
+
+        public long getP50Nanos() { return p50Nanos; }
+
+        public long getP99Nanos() { return p99Nanos; }
+
+        public long getP999Nanos() { return p999Nanos; }
+
+        public long getMaxNanos() { return maxNanos; }
+
+        public double getMeanProbes() { return meanProbes; }
+
+        public long getP99Probes() { return p99Probes; }
+
+        public long getMaxProbes() { return maxProbes; }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.0f p50=%d p99=%d p99.9=%d max=%d ns, probes mean=%.2f p99=%d max=%d",
+                    count, meanNanos, p50Nanos, p99Nanos, p999Nanos, maxNanos, meanProbes, p99Probes, maxProbes);
+        }
+    }
+}